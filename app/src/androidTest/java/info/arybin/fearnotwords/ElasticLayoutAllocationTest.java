@@ -0,0 +1,152 @@
+package info.arybin.fearnotwords;
+
+import android.os.Debug;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.rule.ActivityTestRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.view.MotionEvent;
+import android.view.View;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import info.arybin.fearnotwords.activity.MainActivity;
+import info.arybin.fearnotwords.ui.view.layout.ElasticLayout;
+
+import static org.junit.Assert.*;
+
+/**
+ * Counts the allocations of the main thread during a synthetic drag on an ElasticLayout, every
+ * MOVE event(and the frame following it) must not allocate. Both a bare layout and an entrance of
+ * EntryFragment(whose onSlide() updates the blur, the transition map and the loading animation)
+ * are dragged.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ElasticLayoutAllocationTest {
+
+    private static final int SHORT_DRAG = 100;
+    private static final int LONG_DRAG = 1100;
+
+    /**
+     * Both offsets are far larger than the drag, so the slide never finishes.
+     */
+    private static final int OFFSET = 10000;
+
+    //launched only by the test dragging EntryFragment's entrance
+    @Rule
+    public ActivityTestRule<MainActivity> activityRule = new ActivityTestRule<>(MainActivity.class, false, false);
+
+    private static class EmptyOnSlideListener implements ElasticLayout.OnSlideListener {
+        @Override
+        public void onSlide(ElasticLayout layout, float rateLeftRight, float rateUpDown) {
+        }
+
+        @Override
+        public void onSlideTo(ElasticLayout layout, ElasticLayout.Direction direction) {
+        }
+
+        @Override
+        public void onSlideCanceled(ElasticLayout layout) {
+        }
+
+        @Override
+        public void onStartSlide(ElasticLayout layout) {
+        }
+
+        @Override
+        public void onCancelSlide(ElasticLayout layout) {
+        }
+    }
+
+    /**
+     * Allocation counting is deprecated since API 23 without a replacement(the global counters
+     * are deprecated as well), it is still the only count of the allocations of one thread, so
+     * the allocations of other threads(eg. the database initializing) are not counted.
+     *
+     * @return allocations counted on the calling thread
+     */
+    @SuppressWarnings("deprecation")
+    private static long drag(ElasticLayout layout, MotionEvent event, int moves) {
+        event.setAction(MotionEvent.ACTION_DOWN);
+        event.setLocation(300, 300);
+        layout.dispatchTouchEvent(event);
+
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        event.setAction(MotionEvent.ACTION_MOVE);
+        for (int i = 0; i < moves; i++) {
+            //back and forth between 100 and 500
+            event.setLocation(100 + (i * 10) % 400, 300);
+            layout.dispatchTouchEvent(event);
+            layout.computeScroll();
+        }
+        Debug.stopAllocCounting();
+        long count = Debug.getThreadAllocCount();
+
+        event.setAction(MotionEvent.ACTION_UP);
+        layout.dispatchTouchEvent(event);
+        layout.scrollTo(0, 0);
+        return count;
+    }
+
+    /**
+     * Must be called in main thread.
+     *
+     * @return allocations of the longer drag minus the shorter one
+     */
+    private static long allocationsPerFrame(ElasticLayout layout) {
+        long time = SystemClock.uptimeMillis();
+        MotionEvent event = MotionEvent.obtain(time, time, MotionEvent.ACTION_DOWN, 300, 300, 0);
+        //warm up, so lazily created state is not counted
+        drag(layout, event, SHORT_DRAG);
+        long shortDrag = drag(layout, event, SHORT_DRAG);
+        long longDrag = drag(layout, event, LONG_DRAG);
+        event.recycle();
+        //one off allocations are counted in both drags, only per frame ones grow with the drag
+        return longDrag - shortDrag;
+    }
+
+    private static void assertFewPerFrame(long perFrame) {
+        assertTrue("allocated " + perFrame + " objects in " + (LONG_DRAG - SHORT_DRAG) + " frames",
+                perFrame < (LONG_DRAG - SHORT_DRAG) / 100);
+    }
+
+    @Test
+    public void dragDoesNotAllocatePerFrame() throws Exception {
+        final long[] perFrame = new long[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                ElasticLayout layout = new ElasticLayout(InstrumentationRegistry.getTargetContext());
+                layout.setSlidableOffsetLeftRight(OFFSET);
+                layout.setOnSlideListener(new EmptyOnSlideListener());
+                layout.measure(View.MeasureSpec.makeMeasureSpec(800, View.MeasureSpec.EXACTLY),
+                        View.MeasureSpec.makeMeasureSpec(800, View.MeasureSpec.EXACTLY));
+                layout.layout(0, 0, 800, 800);
+                perFrame[0] = allocationsPerFrame(layout);
+            }
+        });
+        assertFewPerFrame(perFrame[0]);
+    }
+
+    @Test
+    public void entrySlideDoesNotAllocatePerFrame() throws Exception {
+        MainActivity activity = activityRule.launchActivity(null);
+        //EntryFragment is loaded and laid out
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+        final ElasticLayout layout = (ElasticLayout) activity.findViewById(R.id.layoutEntranceNew);
+        assertNotNull(layout);
+        final long[] perFrame = new long[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                //never slides to the end, which would start loading the plan
+                layout.setSlidableOffsetLeftRight(OFFSET);
+                perFrame[0] = allocationsPerFrame(layout);
+            }
+        });
+        assertFewPerFrame(perFrame[0]);
+    }
+}
@@ -0,0 +1,147 @@
+package info.arybin.fearnotwords.model;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import org.litepal.LitePal;
+import org.litepal.LitePalDB;
+import org.litepal.tablemanager.Connector;
+
+import java.util.Random;
+
+import info.arybin.fearnotwords.model.orm.Entity;
+
+/**
+ * A throwaway LitePal database filled with a synthetic dictionary for the instrumented
+ * benchmarks, the database of the app is never touched: LitePal uses this one until close().
+ * <p>
+ * Every entity has its own expression with one pronounce, one translation and two example
+ * expressionLs(one entityL per language each), all entities belong to the plan PLAN_NAME.
+ * Progresses are 40% new, 20% skipped and 40% old.
+ */
+class BenchmarkDatabase {
+
+    static final String PLAN_NAME = "benchmark";
+    static final String LANGUAGE_FROM = "en";
+    static final String LANGUAGE_TO = "zh";
+
+    private static final int EXAMPLES_PER_ENTITY = 2;
+
+    private final String name;
+    private final int size;
+
+    private BenchmarkDatabase(String name, int size) {
+        this.name = name;
+        this.size = size;
+    }
+
+    /**
+     * Must NOT be called in main thread.
+     *
+     * @param size number of entities
+     */
+    static BenchmarkDatabase create(String name, int size, long seed) {
+        LitePal.deleteDatabase(name);
+        LitePal.use(LitePalDB.fromDefault(name));
+        BenchmarkDatabase database = new BenchmarkDatabase(name, size);
+        database.fill(new Random(seed));
+        return database;
+    }
+
+    SQLiteDatabase getDatabase() {
+        return Connector.getDatabase();
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return count distinct entity ids in random order
+     */
+    long[] randomEntityIDs(int count, long seed) {
+        long[] ids = new long[size];
+        for (int i = 0; i < size; i++) {
+            ids[i] = i + 1;
+        }
+        Random random = new Random(seed);
+        for (int i = 0; i < count; i++) {
+            int other = i + random.nextInt(size - i);
+            long tmp = ids[i];
+            ids[i] = ids[other];
+            ids[other] = tmp;
+        }
+        long[] result = new long[count];
+        System.arraycopy(ids, 0, result, 0, count);
+        return result;
+    }
+
+    /**
+     * Switch LitePal back to the database of the app and delete this one.
+     */
+    void close() {
+        LitePal.useDefault();
+        LitePal.deleteDatabase(name);
+    }
+
+    private void fill(Random random) {
+        SQLiteDatabase db = getDatabase();
+        db.beginTransaction();
+        try {
+            db.execSQL("INSERT INTO plan (id, name, from_language, to_language) VALUES (1, ?, ?, ?)",
+                    new Object[]{PLAN_NAME, LANGUAGE_FROM, LANGUAGE_TO});
+            SQLiteStatement expression = db.compileStatement("INSERT INTO expression (id) VALUES (?)");
+            SQLiteStatement entity = db.compileStatement(
+                    "INSERT INTO entity (id, body, language, progress, expression_id) VALUES (?, ?, ?, ?, ?)");
+            SQLiteStatement entityPlan = db.compileStatement(
+                    "INSERT INTO entity_plan (entity_id, plan_id) VALUES (?, 1)");
+            SQLiteStatement pronounce = db.compileStatement(
+                    "INSERT INTO pronounce (body, language, expression_id) VALUES (?, ?, ?)");
+            SQLiteStatement translation = db.compileStatement(
+                    "INSERT INTO translation (body, language, expression_id) VALUES (?, ?, ?)");
+            SQLiteStatement expressionL = db.compileStatement(
+                    "INSERT INTO expressionl (id, expression_id) VALUES (?, ?)");
+            SQLiteStatement entityL = db.compileStatement(
+                    "INSERT INTO entityl (body, language, expressionl_id) VALUES (?, ?, ?)");
+
+            for (long id = 1; id <= size; id++) {
+                expression.bindLong(1, id);
+                expression.executeInsert();
+
+                int roll = random.nextInt(10);
+                entity.bindLong(1, id);
+                entity.bindString(2, "word" + id);
+                entity.bindString(3, LANGUAGE_FROM);
+                entity.bindLong(4, roll < 4 ? Entity.PROGRESS_NEW
+                        : roll < 6 ? Entity.PROGRESS_SKIPPED : Entity.PROGRESS_OLD);
+                entity.bindLong(5, id);
+                entity.executeInsert();
+
+                entityPlan.bindLong(1, id);
+                entityPlan.executeInsert();
+
+                bindText(pronounce, "/word" + id + "/", LANGUAGE_FROM, id).executeInsert();
+                bindText(translation, "translation" + id, LANGUAGE_TO, id).executeInsert();
+
+                for (int i = 0; i < EXAMPLES_PER_ENTITY; i++) {
+                    long expressionLID = id * EXAMPLES_PER_ENTITY + i;
+                    expressionL.bindLong(1, expressionLID);
+                    expressionL.bindLong(2, id);
+                    expressionL.executeInsert();
+                    bindText(entityL, "example" + expressionLID, LANGUAGE_FROM, expressionLID).executeInsert();
+                    bindText(entityL, "translation" + expressionLID, LANGUAGE_TO, expressionLID).executeInsert();
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private static SQLiteStatement bindText(SQLiteStatement statement, String body, String language, long parentID) {
+        statement.bindString(1, body);
+        statement.bindString(2, language);
+        statement.bindLong(3, parentID);
+        return statement;
+    }
+}
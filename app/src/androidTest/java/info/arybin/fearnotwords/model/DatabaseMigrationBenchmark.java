@@ -0,0 +1,59 @@
+package info.arybin.fearnotwords.model;
+
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.litepal.crud.DataSupport;
+
+import info.arybin.fearnotwords.model.orm.Entity;
+
+import static org.junit.Assert.*;
+
+/**
+ * Per entity lookup(LocalizedEntity.create() walking every relation through LitePal) before and
+ * after DatabaseMigration adds its indexes, for dictionaries of several sizes.
+ * <p>
+ * Results are logged, see "adb logcat -s DatabaseMigrationBenchmark".
+ */
+@RunWith(AndroidJUnit4.class)
+public class DatabaseMigrationBenchmark {
+
+    private static final String TAG = "DatabaseMigrationBenchmark";
+    private static final String DATABASE = "benchmark_migration";
+    private static final int[] SIZES = {1000, 10000, 100000};
+    private static final int LOOKUPS = 200;
+
+    @Test
+    public void indexesKeepLookupsFlat() throws Exception {
+        for (int size : SIZES) {
+            BenchmarkDatabase database = BenchmarkDatabase.create(DATABASE, size, 42);
+            try {
+                long[] warmUp = database.randomEntityIDs(LOOKUPS, 1);
+                long[] measured = database.randomEntityIDs(LOOKUPS, 2);
+
+                microsPerLookup(warmUp);
+                double before = microsPerLookup(measured);
+                DatabaseMigration.migrate(database.getDatabase());
+                microsPerLookup(warmUp);
+                double after = microsPerLookup(measured);
+
+                Log.i(TAG, String.format("%d entities: %.1f us -> %.1f us per entity lookup", size, before, after));
+                assertTrue(size + " entities: " + before + " -> " + after, after < before);
+            } finally {
+                database.close();
+            }
+        }
+    }
+
+    private static double microsPerLookup(long[] entityIDs) {
+        LocalizedEntityCache.clear();
+        long start = System.nanoTime();
+        for (long entityID : entityIDs) {
+            //a fresh Entity every time, so no relation loaded before is reused
+            assertNotNull(LocalizedEntity.create(DataSupport.find(Entity.class, entityID), BenchmarkDatabase.LANGUAGE_TO));
+        }
+        return (System.nanoTime() - start) / 1000.0 / entityIDs.length;
+    }
+}
@@ -0,0 +1,90 @@
+package info.arybin.fearnotwords.model;
+
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.litepal.crud.DataSupport;
+
+import java.util.ArrayList;
+
+import info.arybin.fearnotwords.model.orm.Entity;
+import info.arybin.fearnotwords.model.orm.Plan;
+
+import static org.junit.Assert.*;
+
+/**
+ * Choosing the ids of the wanted entities of a plan(new and skipped, about 60%): the former
+ * eager findFirst(Plan.class, true) plus filtering in memory, against LoadPlanTask's id query.
+ * Both go through LitePal on the same database, best of ROUNDS.
+ * <p>
+ * Results are logged, see "adb logcat -s PlanLoadingBenchmark".
+ */
+@RunWith(AndroidJUnit4.class)
+public class PlanLoadingBenchmark {
+
+    private static final String TAG = "PlanLoadingBenchmark";
+    private static final String DATABASE = "benchmark_plan";
+    private static final int[] SIZES = {1000, 10000, 100000};
+    private static final int ROUNDS = 5;
+    private static final LoadPlanTask.Type[] WANTED = {LoadPlanTask.Type.NEW, LoadPlanTask.Type.SKIPPED};
+
+    private static final LoadPlanTask.OnProgressListener NO_LISTENER = new LoadPlanTask.OnProgressListener() {
+        @Override
+        public void onPageLoaded(LoadPlanTask task, ArrayList<LocalizedEntity> page, float percentage) {
+        }
+
+        @Override
+        public void onProgressCompleted(LoadPlanTask task, int count) {
+        }
+    };
+
+    @Test
+    public void idQueryBeatsEagerLoading() throws Exception {
+        for (int size : SIZES) {
+            BenchmarkDatabase database = BenchmarkDatabase.create(DATABASE, size, 42);
+            try {
+                DatabaseMigration.migrate(database.getDatabase());
+                LoadPlanTask task = LoadPlanTask.setupFor(BenchmarkDatabase.PLAN_NAME, NO_LISTENER);
+                assertNotNull(task);
+
+                double eager = Double.MAX_VALUE;
+                double query = Double.MAX_VALUE;
+                for (int round = 0; round < ROUNDS; round++) {
+                    long start = System.nanoTime();
+                    ArrayList<Long> eagerIDs = loadEagerly();
+                    eager = Math.min(eager, (System.nanoTime() - start) / 1e6);
+
+                    start = System.nanoTime();
+                    ArrayList<Long> queriedIDs = task.queryWantedIDs(WANTED);
+                    query = Math.min(query, (System.nanoTime() - start) / 1e6);
+
+                    assertEquals(eagerIDs.size(), queriedIDs.size());
+                }
+
+                Log.i(TAG, String.format("%d entries: eager+filter %.2f ms, SQL ids %.2f ms", size, eager, query));
+                assertTrue(size + " entries: " + eager + " vs " + query, query < eager);
+            } finally {
+                database.close();
+            }
+        }
+    }
+
+    /**
+     * What LoadPlanTask did before: map the plan with all its entities, then filter.
+     */
+    private static ArrayList<Long> loadEagerly() {
+        Plan plan = DataSupport.where("name == ?", BenchmarkDatabase.PLAN_NAME).findFirst(Plan.class, true);
+        ArrayList<Long> wantedIDs = new ArrayList<>();
+        for (Entity entity : plan.getEntities()) {
+            for (LoadPlanTask.Type type : WANTED) {
+                if (entity.getProgress() == type.getProgress()) {
+                    wantedIDs.add(entity.getId());
+                    break;
+                }
+            }
+        }
+        return wantedIDs;
+    }
+}
@@ -7,10 +7,12 @@ package info.arybin.fearnotwords;
 public interface Constants {
     int MSG_INITIALIZED_DB = 0;
     int MSG_LOADED = 1;
+    int MSG_RELEASING_DB = 2;
+    int MSG_FAILED_DB = 3;
 
-    String KEY_LOADED_MEMORABLE = "1";
+    String PREF_DB_VERSION = "db_version";
 
-    String PREFIX_SOUND = "sound_";
+    String KEY_SESSION_ID = "1";
 
     String SOUND_PASS = "pass";
     String SOUND_SKIP = "skip";
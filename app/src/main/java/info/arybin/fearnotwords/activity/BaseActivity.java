@@ -1,11 +1,10 @@
 package info.arybin.fearnotwords.activity;
 
+import android.app.AlertDialog;
 import android.content.Context;
+import android.content.DialogInterface;
 import android.content.SharedPreferences;
 import android.content.res.AssetManager;
-import android.graphics.Typeface;
-import android.media.AudioAttributes;
-import android.media.SoundPool;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Message;
@@ -13,39 +12,25 @@ import android.support.v4.app.Fragment;
 import android.support.v4.app.FragmentActivity;
 import android.support.v4.app.FragmentManager;
 import android.view.WindowManager;
-import android.widget.TextView;
-
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.InputStream;
-import java.lang.reflect.Field;
-import java.util.HashMap;
 
 import info.arybin.fearnotwords.Config;
 import info.arybin.fearnotwords.Constants;
 import info.arybin.fearnotwords.R;
 import info.arybin.fearnotwords.fragment.BaseFragment;
-import info.arybin.fearnotwords.ui.view.textview.TextViewAscii;
-import info.arybin.fearnotwords.ui.view.textview.TextViewNonAscii;
-import info.arybin.fearnotwords.ui.view.textview.TextViewPhonetic;
-
-import static android.media.AudioManager.STREAM_MUSIC;
+import info.arybin.fearnotwords.model.DatabaseInitializer;
+import info.arybin.fearnotwords.ui.SoundBank;
 
 public abstract class BaseActivity extends FragmentActivity implements Constants, Handler.Callback {
 
     private boolean initialized = false;
     private Handler handler = new Handler(this);
 
-    private BaseFragment lastLoadedFragment;
-
     protected WindowManager windowManager;
     protected AssetManager assetManager;
     protected FragmentManager fragmentManager;
 
-    protected SoundPool soundPool;
-    protected HashMap<String, Integer> soundMap = new HashMap<>();
+    protected SoundBank soundBank;
     private SharedPreferences configs;
-    protected boolean initializedDatabase = false;
 
     @Override
     protected void onStart() {
@@ -59,8 +44,17 @@ public abstract class BaseActivity extends FragmentActivity implements Constants
     @Override
     public boolean handleMessage(Message msg) {
         switch (msg.what) {
+            case MSG_RELEASING_DB:
+                onReleasingDatabase(msg.arg1 / 100f);
+                break;
             case MSG_INITIALIZED_DB:
-                initializedDatabase = true;
+                BaseFragment fragment = getCurrentFragment();
+                if (null != fragment) {
+                    fragment.onDatabaseInitialized();
+                }
+                break;
+            case MSG_FAILED_DB:
+                onDatabaseFailed();
                 break;
         }
 
@@ -72,16 +66,6 @@ public abstract class BaseActivity extends FragmentActivity implements Constants
         super.onSaveInstanceState(outState);
     }
 
-    protected void initializeTextView(TextView textView) {
-        if (textView instanceof TextViewNonAscii) {
-            setTextViewFont(textView, readConfig(Config.FONT_NON_ASCII));
-        } else if (textView instanceof TextViewAscii) {
-            setTextViewFont(textView, readConfig(Config.FONT_ASCII));
-        } else if (textView instanceof TextViewPhonetic) {
-            setTextViewFont(textView, readConfig(Config.FONT_PHONETIC));
-        }
-    }
-
     private void initialize() {
         getWindow().addFlags(WindowManager.LayoutParams.FLAG_TRANSLUCENT_STATUS);
         fragmentManager = getSupportFragmentManager();
@@ -90,106 +74,83 @@ public abstract class BaseActivity extends FragmentActivity implements Constants
         configs = getSharedPreferences(getPackageName(), MODE_PRIVATE);
         initializeViews();
         initializeDatabase();
+        //after start(), so a failure of a former activity is not sent to this one
+        DatabaseInitializer.addHandler(handler);
         initializeSounds();
     }
 
 
     private void initializeSounds() {
-        try {
-            tryToInitializeSounds();
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        soundBank = new SoundBank(this);
+        soundBank.load();
     }
 
-    private void tryToInitializeSounds() throws Exception {
-        soundPool = new SoundPool.Builder()
-                .setMaxStreams(10)
-                .setAudioAttributes(new AudioAttributes.Builder().setLegacyStreamType(STREAM_MUSIC).build())
-                .build();
-        Class<R.raw> rawClass = R.raw.class;
-        for (Field field : rawClass.getDeclaredFields()) {
-            if (field.getName().startsWith(PREFIX_SOUND)) {
-                soundMap.put(field.getName().substring(PREFIX_SOUND.length()),
-                        soundPool.load(this, field.getInt(null), 1));
-            }
-        }
+    public boolean playSound(String name) {
+        return null != soundBank && soundBank.play(name);
     }
 
-    public boolean playSound(String name) {
-        Integer soundID = soundMap.get(name);
-        return null != soundID && 0 != soundPool.play(soundID, 1, 1, 1, 0, 1);
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        DatabaseInitializer.removeHandler(handler);
+        //a state sent before removal must not reach the destroyed activity
+        handler.removeCallbacksAndMessages(null);
+        if (null != soundBank) {
+            soundBank.release();
+        }
     }
 
 
-    public void initializeViews() {
-        initializeViews(getClass(), this);
+    /**
+     * Called once, the first time the activity is started(eg. set up the views bound in onCreate).
+     */
+    protected void initializeViews() {
     }
 
-    public void initializeViews(Class<?> klass, Object instance) {
-        try {
-            tryToInitializeViews(klass, instance);
-        } catch (Exception e) {
-            //log something
-            e.printStackTrace();
-        }
+    /**
+     * Initialized once per process(see DatabaseInitializer), this activity is only told the state.
+     */
+    private void initializeDatabase() {
+        DatabaseInitializer.start(this, readConfig(Config.DB_FILE), configs);
     }
 
-    private void tryToInitializeViews(Class<?> klass, Object instance) throws Exception {
-        for (Field field : klass.getDeclaredFields()) {
-            try {
-                Object obj = field.get(instance);
-                if (obj instanceof TextView) {
-                    initializeTextView((TextView) obj);
-                }
-            } catch (IllegalAccessException ignored) {
-
-            }
-
-        }
+    public boolean isDatabaseInitialized() {
+        return DatabaseInitializer.isInitialized();
     }
 
-    private void setTextViewFont(TextView textView, String fontName) {
-        Typeface tf = Typeface.createFromAsset(assetManager, "fonts/" + fontName);
-        textView.setTypeface(tf);
+    /**
+     * Called in main thread while the shipped database is being released.
+     */
+    protected void onReleasingDatabase(float percentage) {
+
     }
 
-    private void initializeDatabase() {
-        if (databaseExist()) {
-            initializedDatabase = true;
+    /**
+     * Called in main thread if releasing or migrating the database failed(eg. checksum mismatch,
+     * no space left), by default asks to retry or quit.
+     */
+    protected void onDatabaseFailed() {
+        //a destroyed(eg. rotated) activity is not sent the message, but may not be removed yet
+        if (isFinishing() || isDestroyed()) {
             return;
         }
-        releaseDatabase();
-    }
-
-    protected final boolean databaseExist() {
-        return getDatabasePath(readConfig(Config.DB_FILE)).exists();
-    }
-
-    protected final void releaseDatabase() {
-        new Thread(new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    byte[] buf;
-                    String dbFileName = readConfig(Config.DB_FILE);
-                    File dbFile = getDatabasePath(dbFileName);
-                    dbFile.getParentFile().mkdirs();
-                    dbFile.createNewFile();
-                    InputStream inputStream = assetManager.open("databases/" + dbFileName);
-                    buf = new byte[inputStream.available()];
-                    FileOutputStream fileOutputStream = new FileOutputStream(dbFile);
-                    while (inputStream.read(buf) != -1) {
-                        fileOutputStream.write(buf);
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.db_failed_title)
+                .setMessage(R.string.db_failed_message)
+                .setCancelable(false)
+                .setPositiveButton(R.string.db_failed_retry, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        initializeDatabase();
                     }
-                    fileOutputStream.close();
-                    inputStream.close();
-                    handler.sendEmptyMessage(MSG_INITIALIZED_DB);
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-            }
-        }).start();
+                })
+                .setNegativeButton(R.string.db_failed_quit, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        finish();
+                    }
+                })
+                .show();
     }
 
     protected Fragment loadFragment(int container, Class<? extends BaseFragment> fragment) {
@@ -207,15 +168,31 @@ public abstract class BaseActivity extends FragmentActivity implements Constants
 
     private Fragment tryToLoadFragment(int container, Class<? extends BaseFragment> fragmentClass, Bundle args) throws Exception {
         BaseFragment fragment = fragmentClass.newInstance();
-        lastLoadedFragment = fragment;
         fragment.setArguments(args);
+        String tag = fragmentClass.getName() + "@" + System.identityHashCode(fragment);
         fragmentManager.beginTransaction()
-                .addToBackStack(null)
-                .replace(container, fragment)
+                .addToBackStack(tag)
+                .replace(container, fragment, tag)
                 .commit();
         return fragment;
     }
 
+    /**
+     * Found through the back stack, so it is also right after the activity was recreated or a
+     * fragment was popped.
+     *
+     * @return the fragment loaded last and not popped yet, null if none
+     */
+    protected BaseFragment getCurrentFragment() {
+        FragmentManager manager = getSupportFragmentManager();
+        int count = manager.getBackStackEntryCount();
+        if (count == 0) {
+            return null;
+        }
+        Fragment fragment = manager.findFragmentByTag(manager.getBackStackEntryAt(count - 1).getName());
+        return fragment instanceof BaseFragment ? (BaseFragment) fragment : null;
+    }
+
 
     public String readConfig(Config config) {
         if (null != configs) {
@@ -228,8 +205,9 @@ public abstract class BaseActivity extends FragmentActivity implements Constants
     @Override
     public void onBackPressed() {
         boolean consumed = false;
-        if (null != lastLoadedFragment) {
-            consumed = lastLoadedFragment.onBackPressed();
+        BaseFragment fragment = getCurrentFragment();
+        if (null != fragment) {
+            consumed = fragment.onBackPressed();
         }
         if (!consumed) {
             super.onBackPressed();
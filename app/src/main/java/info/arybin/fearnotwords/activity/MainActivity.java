@@ -28,12 +28,14 @@ public class MainActivity extends BaseActivity {
 
 
     @Override
-    public void initializeViews() {
-        super.initializeViews();
+    protected void initializeViews() {
         imageView.setTransitionGenerator(new SimpleTransitionGenerator(0.1f, 5));
         imageViewBlurred.setupWith((ViewGroup) imageView.getParent()).blurRadius(BLUR_RADIUS);
         imageViewBlurred.setBlurAutoUpdate(false);
-        loadFragment(R.id.layoutFragmentContainer, EntryFragment.class);
+        //restored by the FragmentManager if the activity was recreated
+        if (null == getCurrentFragment()) {
+            loadFragment(R.id.layoutFragmentContainer, EntryFragment.class);
+        }
     }
 
 }
@@ -6,11 +6,23 @@ import com.wonderkiln.blurkit.BlurKit;
 
 import org.litepal.LitePal;
 
+import info.arybin.fearnotwords.model.LocalizedEntityCache;
+import info.arybin.fearnotwords.model.SessionRepository;
+import info.arybin.fearnotwords.ui.TypefaceRegistry;
+
 public class BaseApplication extends Application {
     @Override
     public void onCreate() {
         super.onCreate();
         LitePal.initialize(this);
         BlurKit.init(this);
+        SessionRepository.initialize(this);
+        TypefaceRegistry.warmUp(this);
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        LocalizedEntityCache.onTrimMemory(level);
     }
 }
@@ -17,7 +17,6 @@ public abstract class BaseFragment extends Fragment implements Constants {
     public void onActivityCreated(@Nullable Bundle savedInstanceState) {
         super.onActivityCreated(savedInstanceState);
         activity = ((BaseActivity) getActivity());
-        activity.initializeViews(getClass(), this);
     }
 
 
@@ -26,6 +25,17 @@ public abstract class BaseFragment extends Fragment implements Constants {
      */
     abstract public boolean onBackPressed();
 
+    /**
+     * Called in main thread once the database is ready to be queried.
+     */
+    public void onDatabaseInitialized() {
+
+    }
+
+    protected boolean isDatabaseInitialized() {
+        return null != activity && activity.isDatabaseInitialized();
+    }
+
 
     protected String readConfig(Config config) {
         if (null != activity) {
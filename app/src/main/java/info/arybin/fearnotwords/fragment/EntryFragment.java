@@ -1,9 +1,9 @@
 package info.arybin.fearnotwords.fragment;
 
+import android.os.AsyncTask;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.Message;
 import android.support.annotation.Nullable;
+import android.util.SparseIntArray;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -16,8 +16,6 @@ import com.github.florent37.expectanim.listener.AnimationEndListener;
 import com.ldoublem.loadingviewlib.view.LVGhost;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -25,9 +23,15 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import butterknife.BindView;
 import butterknife.ButterKnife;
 import eightbitlab.com.blurview.BlurView;
+import info.arybin.fearnotwords.Config;
 import info.arybin.fearnotwords.R;
 import info.arybin.fearnotwords.activity.MainActivity;
-import info.arybin.fearnotwords.model.FakeEntity;
+import info.arybin.fearnotwords.model.LoadPlanTask;
+import info.arybin.fearnotwords.model.LocalizedEntity;
+import info.arybin.fearnotwords.model.MemorizeSession;
+import info.arybin.fearnotwords.model.ProgressCounter;
+import info.arybin.fearnotwords.model.SessionRepository;
+import info.arybin.fearnotwords.model.orm.Entity;
 import info.arybin.fearnotwords.ui.view.layout.ElasticLayout;
 
 import static com.github.florent37.expectanim.core.Expectations.aboveOf;
@@ -39,7 +43,8 @@ import static com.github.florent37.expectanim.core.Expectations.visible;
 import static info.arybin.fearnotwords.Utils.retrieveAllChildViews;
 
 public class EntryFragment extends BaseFragment implements
-        ElasticLayout.OnSlideListener, View.OnClickListener, Handler.Callback {
+        ElasticLayout.OnSlideListener, View.OnClickListener, LoadPlanTask.OnProgressListener,
+        MemorizeSession.OnCloseListener {
 
     public static final int STATE_IDLE = 0;
     public static final int STATE_LOADING = 1;
@@ -50,12 +55,17 @@ public class EntryFragment extends BaseFragment implements
 
     private AtomicBoolean canSwitchSlide = new AtomicBoolean(true);
 
-    private LinkedList<View> currentSlidingChildViews = new LinkedList<>();
-    private HashMap<View, Float> transitionMap = new HashMap<>();
+    //read on every slide frame, kept in arrays so onSlide() neither iterates nor boxes
+    private View[] currentSlidingChildViews = new View[0];
+    private View[] transitionViews = new View[0];
+    private float[] transitionDistances = new float[0];
 
     private ExpectAnim loadingAnimPre;
     private ExpectAnim loadingAnim;
 
+    private LoadPlanTask loadPlanTask;
+    private MemorizeSession session;
+
     @BindView(R.id.blurView)
     public BlurView blurView;
 
@@ -97,8 +107,6 @@ public class EntryFragment extends BaseFragment implements
     @BindView(R.id.separatorBottom)
     public View separatorBottom;
 
-    private Handler handler = new Handler(this);
-
 
     private void initialize() {
         loadingAnimPre = new ExpectAnim().expect(loadingGhost)
@@ -128,6 +136,37 @@ public class EntryFragment extends BaseFragment implements
 
         layoutPost.setOnClickListener(this);
 
+        if (isDatabaseInitialized()) {
+            showProgressCounts();
+        }
+    }
+
+    private void showProgressCounts() {
+        final String planName = readConfig(Config.CURRENT_PLAN);
+        SparseIntArray counts = ProgressCounter.getCached(planName);
+        if (null != counts) {
+            renderProgressCounts(counts);
+            return;
+        }
+        new AsyncTask<Void, Void, SparseIntArray>() {
+            @Override
+            protected SparseIntArray doInBackground(Void... params) {
+                return ProgressCounter.load(planName);
+            }
+
+            @Override
+            protected void onPostExecute(SparseIntArray counts) {
+                if (isAdded() && null != getView()) {
+                    renderProgressCounts(counts);
+                }
+            }
+        }.execute();
+    }
+
+    private void renderProgressCounts(SparseIntArray counts) {
+        textViewNewCount.setText(String.valueOf(counts.get(Entity.PROGRESS_NEW)));
+        textViewOldCount.setText(String.valueOf(counts.get(Entity.PROGRESS_OLD)));
+        textViewAllCount.setText(String.valueOf(ProgressCounter.total(counts)));
     }
 
     private void initTransitionMap(ElasticLayout originLayout) {
@@ -145,16 +184,15 @@ public class EntryFragment extends BaseFragment implements
     }
 
     private void tryToPrepareTransitionMap(ElasticLayout originLayout, int hierarchy) throws Exception {
-        transitionMap.clear();
-        currentSlidingChildViews = retrieveAllChildViews(originLayout);
+        LinkedList<View> slidingChildViews = retrieveAllChildViews(originLayout);
+        currentSlidingChildViews = slidingChildViews.toArray(new View[slidingChildViews.size()]);
         ViewGroup parent = (ViewGroup) originLayout.getParent();
         for (int i = hierarchy; i > 1; i--) {
             parent = (ViewGroup) parent.getParent();
         }
         LinkedList<View> childViews = retrieveAllChildViews(parent, originLayout);
-        for (View view : childViews) {
-            transitionMap.put(view, 0f);
-        }
+        transitionViews = childViews.toArray(new View[childViews.size()]);
+        transitionDistances = new float[transitionViews.length];
 
     }
 
@@ -165,36 +203,30 @@ public class EntryFragment extends BaseFragment implements
 
         tryToPrepareTransitionMap(originLayout, hierarchy);
 
-        for (View view : transitionMap.keySet()) {
-            int posOriginView[] = new int[2];
-            originLayout.getLocationOnScreen(posOriginView);
-            int posView[] = new int[2];
-            view.getLocationOnScreen(posView);
+        int posOriginView[] = new int[2];
+        originLayout.getLocationOnScreen(posOriginView);
+        int posView[] = new int[2];
+        for (int i = 0; i < transitionViews.length; i++) {
+            transitionViews[i].getLocationOnScreen(posView);
 
             float maxDistance = 100f;
             int direction = (posView[1] - posOriginView[1]);
             direction = direction > 1 ? 1 : -1;
-            transitionMap.put(view, direction * maxDistance * (0.5f + 1.5f * random.nextFloat()));
+            transitionDistances[i] = direction * maxDistance * (0.5f + 1.5f * random.nextFloat());
         }
 
     }
 
     private void setTransitionMapPercentage(float percent) {
-        Iterator<View> i;
-        View tmpView;
         float rateAbs = Math.abs(percent);
         float conjugateRateAbs = 1 - rateAbs;
         float conjugateRateAbs3 = conjugateRateAbs * conjugateRateAbs * conjugateRateAbs;
-        i = transitionMap.keySet().iterator();
-        while (i.hasNext()) {
-            tmpView = i.next();
-            tmpView.setTranslationY(rateAbs * transitionMap.get(tmpView));
-            tmpView.setAlpha(conjugateRateAbs3);
+        for (int i = 0; i < transitionViews.length; i++) {
+            transitionViews[i].setTranslationY(rateAbs * transitionDistances[i]);
+            transitionViews[i].setAlpha(conjugateRateAbs3);
         }
-        i = currentSlidingChildViews.iterator();
-        while (i.hasNext()) {
-            tmpView = i.next();
-            tmpView.setAlpha(conjugateRateAbs);
+        for (View view : currentSlidingChildViews) {
+            view.setAlpha(conjugateRateAbs);
         }
     }
 
@@ -216,7 +248,18 @@ public class EntryFragment extends BaseFragment implements
                 .start();
     }
 
+    /**
+     * Stop the task appending pages(if any), nothing it has not delivered yet reaches this fragment.
+     */
+    private void cancelLoadPlanTask() {
+        if (null != loadPlanTask) {
+            loadPlanTask.cancel(false);
+            loadPlanTask = null;
+        }
+    }
+
     private void abortLoading() {
+        cancelLoadPlanTask();
         new ExpectAnim()
                 .expect(loadingGhost).toBe(invisible())
                 .expect(separatorBottom).toBe(alpha(1))
@@ -259,27 +302,15 @@ public class EntryFragment extends BaseFragment implements
     private void prepareToLoadNew() {
         switchToLoadingState();
 
-        new Thread(new Runnable() {
-            @Override
-            public void run() {
-                ArrayList<FakeEntity> list = new ArrayList<>(300);
-                for (int i = 0; i < 300; i++) {
-                    list.add(new FakeEntity(i));
-                }
-                try {
-                    Thread.sleep(2000);
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
-                Message msg = new Message();
-                Bundle data = new Bundle();
-                data.putParcelableArrayList(KEY_LOADED_MEMORABLE, list);
-                msg.setData(data);
-                msg.what = MSG_LOADED;
-                handler.sendMessage(msg);
-
-            }
-        }).start();
+        //pages of the previous task must not reach the new session
+        cancelLoadPlanTask();
+        session = null;
+        loadPlanTask = LoadPlanTask.setupFor(readConfig(Config.CURRENT_PLAN), this);
+        if (null == loadPlanTask) {
+            abortLoading();
+            return;
+        }
+        loadPlanTask.execute(LoadPlanTask.Type.NEW);
     }
 
 
@@ -297,6 +328,22 @@ public class EntryFragment extends BaseFragment implements
         return view;
     }
 
+    @Override
+    public void onResume() {
+        super.onResume();
+        //counts changed by a session this fragment was covered by
+        if (null != getView() && isDatabaseInitialized()) {
+            showProgressCounts();
+        }
+    }
+
+    @Override
+    public void onDatabaseInitialized() {
+        if (null != getView()) {
+            showProgressCounts();
+        }
+    }
+
     @Override
     public boolean onBackPressed() {
         switch (state) {
@@ -365,15 +412,41 @@ public class EntryFragment extends BaseFragment implements
     }
 
     @Override
-    public boolean handleMessage(Message msg) {
-        switch (msg.what) {
-            case MSG_LOADED:
-                loadFragment(R.id.layoutFragmentContainer, MemorizeFragment.class, msg.getData());
-                finishLoading();
-                break;
-            default:
+    public void onPageLoaded(LoadPlanTask task, ArrayList<LocalizedEntity> page, float percentage) {
+        if (task != loadPlanTask) {
+            return;
+        }
+        if (null != session) {
+            session.append(page);
+        } else if (page.size() > 0 && STATE_LOADING == state) {
+            //the session starts with the first page, the rest are appended in background
+            session = SessionRepository.open(task.getPlanName(), task.getLanguage());
+            session.setOnCloseListener(this);
+            session.append(page);
+            Bundle data = new Bundle();
+            data.putLong(KEY_SESSION_ID, session.getID());
+            loadFragment(R.id.layoutFragmentContainer, MemorizeFragment.class, data);
+            finishLoading();
+        }
+    }
+
+    @Override
+    public void onProgressCompleted(LoadPlanTask task, int count) {
+        if (task != loadPlanTask) {
+            return;
+        }
+        loadPlanTask = null;
+        if (0 == count && STATE_LOADING == state) {
+            abortLoading();
+        }
+    }
 
+    @Override
+    public void onClosed(MemorizeSession closed) {
+        //the MemorizeFragment is gone, the rest of the plan is not wanted any more
+        if (closed == session) {
+            cancelLoadPlanTask();
+            session = null;
         }
-        return false;
     }
 }
@@ -13,21 +13,29 @@ import android.widget.TextView;
 import java.util.AbstractQueue;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import butterknife.BindView;
 import butterknife.ButterKnife;
 import info.arybin.fearnotwords.R;
+import info.arybin.fearnotwords.core.ActionHistory;
 import info.arybin.fearnotwords.core.OperableQueue;
 import info.arybin.fearnotwords.core.SimpleOperableQueue;
 import info.arybin.fearnotwords.model.Memorable;
+import info.arybin.fearnotwords.model.MemorableIdMapper;
+import info.arybin.fearnotwords.model.MemorizeSession;
+import info.arybin.fearnotwords.model.ProgressJournal;
+import info.arybin.fearnotwords.model.SessionRepository;
 import info.arybin.fearnotwords.model.Translatable;
+import info.arybin.fearnotwords.model.orm.Entity;
 import info.arybin.fearnotwords.ui.view.layout.ElasticLayout;
 import info.arybin.fearnotwords.ui.view.layout.ObservableLayout;
 import info.arybin.fearnotwords.ui.view.layout.TripleLayout;
 
 import static java.lang.Math.abs;
 
-public class MemorizeFragment extends BaseFragment implements ObservableLayout.EventListener, ElasticLayout.OnSlideListener {
+public class MemorizeFragment extends BaseFragment implements ObservableLayout.EventListener,
+        ElasticLayout.OnSlideListener, MemorizeSession.OnAppendListener, ActionHistory.OnCommitListener {
 
     @BindView(R.id.tripleView)
     protected TripleLayout tripleLayout;
@@ -69,10 +77,15 @@ public class MemorizeFragment extends BaseFragment implements ObservableLayout.E
     protected ImageView imagePass;
 
 
-    private OperableQueue<? extends Memorable> memorableQueue;
+    private MemorizeSession session;
+    private SimpleOperableQueue<Memorable> memorableQueue;
+    //resolves the ids of committed actions, see onCommitted()
+    private MemorableIdMapper memorableMapper;
 
 
     private static final int LOCK_SLOP = 70;
+    //pass/skip actions that can be taken back with the back key
+    private static final int HISTORY_CAPACITY = 32;
 
     private static final int PRI_STATE_NORMAL = 0x1;
     private static final int PRI_STATE_LOOP = 0x2;
@@ -107,13 +120,55 @@ public class MemorizeFragment extends BaseFragment implements ObservableLayout.E
     private float previousY;
 
 
-    private void initialize() {
-        ArrayList<? extends Memorable> tmp = getArguments().getParcelableArrayList(KEY_LOADED_MEMORABLE);
-        memorableQueue = SimpleOperableQueue.buildFrom(tmp);
+    private void initialize(Bundle savedInstanceState) {
+        long sessionID = getArguments().getLong(KEY_SESSION_ID);
+        session = SessionRepository.get(sessionID);
+        if (null == session && null != savedInstanceState) {
+            //the process was killed, rebuild the session from its snapshot
+            session = SessionRepository.restore(sessionID);
+        }
+        if (null == session) {
+            session = SessionRepository.open(null, null);
+        }
+        if (null == savedInstanceState) {
+            //the queue state is only for the recreated fragment, a new one starts over
+            session.takeQueueSnapshot();
+        }
+        if (!session.isRestoring()) {
+            buildQueue();
+        }
+        session.setOnAppendListener(this);
 
         initializedViews();
     }
 
+    private void buildQueue() {
+        List<Memorable> memorables = session.getMemorables();
+        memorableMapper = new MemorableIdMapper(memorables);
+        //applied once the session is complete, it may have been restored from file
+        byte[] queueSnapshot = session.takeQueueSnapshot();
+        if (null != queueSnapshot) {
+            memorableQueue = SimpleOperableQueue.restoreFrom(queueSnapshot, memorableMapper);
+            if (null != memorableQueue) {
+                if (memorableQueue.isInLoop()) {
+                    //the press that started the loop is long gone
+                    memorableQueue.endLoop();
+                }
+                //appended to the session after the snapshot was taken
+                ArrayList<Memorable> unresolved = memorableMapper.getUnresolved();
+                if (unresolved.size() > 0) {
+                    memorableQueue.append(unresolved);
+                }
+                memorableQueue.enableHistory(HISTORY_CAPACITY, memorableMapper, this);
+                return;
+            }
+        }
+        memorableQueue = SimpleOperableQueue.buildFrom(memorables);
+        if (null != memorableQueue) {
+            memorableQueue.enableHistory(HISTORY_CAPACITY, memorableMapper, this);
+        }
+    }
+
     private void initializedViews() {
         tripleLayout.lock();
         layoutMain.setEventListener(this);
@@ -155,7 +210,43 @@ public class MemorizeFragment extends BaseFragment implements ObservableLayout.E
         layoutPass.setOnSlideListener(this);
 
 
-        updateView(memorableQueue.current());
+        if (null != memorableQueue) {
+            updateView(memorableQueue.current());
+        }
+    }
+
+    /**
+     * Memorables appended to the session after this fragment was created(eg. later pages of a plan).
+     */
+    @Override
+    public void onAppended(List<? extends Memorable> appended) {
+        if (session.isRestoring()) {
+            //wait for onRestored(), the snapshot needs the whole session
+            return;
+        }
+        if (null == memorableQueue) {
+            memorableMapper = new MemorableIdMapper(appended);
+            memorableQueue = SimpleOperableQueue.buildFrom(appended);
+            memorableQueue.enableHistory(HISTORY_CAPACITY, memorableMapper, this);
+            updateView(memorableQueue.current());
+        } else {
+            memorableMapper.append(appended);
+            boolean wasEmpty = null == memorableQueue.current();
+            memorableQueue.append(appended);
+            if (wasEmpty) {
+                updateView(memorableQueue.current());
+            }
+        }
+    }
+
+    @Override
+    public void onRestored() {
+        if (null == memorableQueue) {
+            buildQueue();
+        }
+        if (null != memorableQueue) {
+            updateView(memorableQueue.current());
+        }
     }
 
     public void updateView(Memorable memorable) {
@@ -163,12 +254,20 @@ public class MemorizeFragment extends BaseFragment implements ObservableLayout.E
     }
 
     public void updateView(Memorable memorable, int exampleIndex) {
+        if (null == memorable) {
+            return;
+        }
         textViewBody.setText(memorable.getOriginal());
         textViewPronounce.setText(memorable.getPronounce());
         textViewTranslation.setText(memorable.getTranslation());
-        Translatable example = memorable.getExampleAt(exampleIndex);
-        textViewExampleBody.setText(example.getOriginal());
-        textViewExampleTranslation.setText(example.getTranslation());
+        if (exampleIndex < memorable.getExampleCount()) {
+            Translatable example = memorable.getExampleAt(exampleIndex);
+            textViewExampleBody.setText(example.getOriginal());
+            textViewExampleTranslation.setText(example.getTranslation());
+        } else {
+            textViewExampleBody.setText(null);
+            textViewExampleTranslation.setText(null);
+        }
     }
 
 
@@ -183,6 +282,23 @@ public class MemorizeFragment extends BaseFragment implements ObservableLayout.E
     }
 
 
+    private void recordProgress(Memorable memorable, int progress) {
+        if (null != memorable) {
+            int fromProgress = memorable.getMemoryProgress();
+            memorable.setMemoryProgress(progress);
+            ProgressJournal.getInstance().record(session.getPlanName(), memorable.getEntityID(), fromProgress, progress);
+        }
+    }
+
+    /**
+     * Progress is written only once an action can no longer be undone.
+     */
+    @Override
+    public void onCommitted(int op, long itemID) {
+        Memorable memorable = memorableMapper.itemOf(itemID);
+        recordProgress(memorable, op == ActionHistory.OP_PASS ? Entity.PROGRESS_OLD : Entity.PROGRESS_SKIPPED);
+    }
+
     private void addMinorState(int state) {
         minorState |= state;
     }
@@ -215,12 +331,52 @@ public class MemorizeFragment extends BaseFragment implements ObservableLayout.E
     @Override
     public void onActivityCreated(@Nullable Bundle savedInstanceState) {
         super.onActivityCreated(savedInstanceState);
-        initialize();
+        initialize(savedInstanceState);
     }
 
     @Override
-    public boolean onBackPressed() {
+    public void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        //while restoring, the file and the snapshot in it are left as they are
+        if (null != session && !session.isRestoring()) {
+            if (null != memorableQueue) {
+                //what can be undone goes along with the snapshot, so undo survives recreation
+                session.setQueueSnapshot(memorableQueue.snapshot(new MemorableIdMapper()));
+            }
+            //the ids and the snapshot are unbounded, they go to a file instead of the Bundle
+            SessionRepository.save(session);
+        }
+    }
 
+    @Override
+    public void onPause() {
+        super.onPause();
+        //only recreated(eg. rotated), the history is kept in the snapshot
+        if (null != memorableQueue && !getActivity().isChangingConfigurations()) {
+            memorableQueue.commitHistory();
+        }
+        ProgressJournal.getInstance().flush();
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        if (null != session) {
+            session.setOnAppendListener(null);
+            if (isRemoving()) {
+                SessionRepository.close(session.getID());
+                ProgressJournal.getInstance().flush();
+            }
+        }
+    }
+
+    @Override
+    public boolean onBackPressed() {
+        if (null != memorableQueue && primaryState == PRI_STATE_NORMAL && memorableQueue.canUndo()) {
+            playSound(SOUND_TICK);
+            updateView(memorableQueue.undo());
+            return true;
+        }
         return false;
     }
 
@@ -265,6 +421,10 @@ public class MemorizeFragment extends BaseFragment implements ObservableLayout.E
         System.out.println("OnPressUp-" + pressDownView);
         tryToHideTranslation();
 
+        if (null == memorableQueue) {
+            //session is still being restored
+            return;
+        }
         if (primaryState == PRI_STATE_LOOP) {
             primaryState = PRI_STATE_NORMAL;
             updateView(memorableQueue.endLoop());
@@ -336,6 +496,9 @@ public class MemorizeFragment extends BaseFragment implements ObservableLayout.E
 
     @Override
     public void onSlideTo(ElasticLayout layout, ElasticLayout.Direction direction) {
+        if (null == memorableQueue) {
+            return;
+        }
         switch (layout.getId()) {
             case R.id.layoutSkip:
                 tryToLoopIn(OperableQueue.DataSource.Skipped);
@@ -0,0 +1,166 @@
+package info.arybin.fearnotwords.model;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+
+import org.litepal.tablemanager.Connector;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import info.arybin.fearnotwords.Constants;
+
+/**
+ * Releases(see DatabaseReleaser) and migrates(see DatabaseMigration) the database once per
+ * process.
+ * <p>
+ * start() while the database is being initialized or is initialized already does nothing, so an
+ * activity recreated meanwhile(eg. rotated during the first release) never starts a second writer
+ * of the same file, it only registers its Handler and is sent the current state.
+ * <p>
+ * Everything using the database in background waits in awaitInitialized() first, thus nothing
+ * (eg. ProgressJournal, the restore of a session) opens the old file while it is being replaced.
+ */
+public class DatabaseInitializer implements Constants {
+
+    private static final int STATE_IDLE = 0;
+    private static final int STATE_INITIALIZING = 1;
+    private static final int STATE_INITIALIZED = 2;
+    private static final int STATE_FAILED = 3;
+
+    private static final Object lock = new Object();
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor();
+    //guarded by lock, they are sent MSG_RELEASING_DB, MSG_INITIALIZED_DB and MSG_FAILED_DB
+    private static final ArrayList<Handler> handlers = new ArrayList<>();
+    private static int state = STATE_IDLE;
+
+    private DatabaseInitializer() {
+    }
+
+    /**
+     * @param handler sent MSG_INITIALIZED_DB/MSG_FAILED_DB at once if initializing is over
+     */
+    public static void addHandler(Handler handler) {
+        synchronized (lock) {
+            handlers.add(handler);
+            if (STATE_INITIALIZED == state) {
+                handler.sendEmptyMessage(MSG_INITIALIZED_DB);
+            } else if (STATE_FAILED == state) {
+                handler.sendEmptyMessage(MSG_FAILED_DB);
+            }
+        }
+    }
+
+    public static void removeHandler(Handler handler) {
+        synchronized (lock) {
+            handlers.remove(handler);
+        }
+    }
+
+    /**
+     * Release the shipped database if it is not installed or was updated, then migrate it, in
+     * background. Does nothing unless never started or failed(eg. retried).
+     */
+    public static void start(Context context, String dbFileName, final SharedPreferences preferences) {
+        synchronized (lock) {
+            if (STATE_INITIALIZING == state || STATE_INITIALIZED == state) {
+                return;
+            }
+            state = STATE_INITIALIZING;
+        }
+        final File dbFile = context.getDatabasePath(dbFileName);
+        final DatabaseReleaser releaser = new DatabaseReleaser(context.getAssets(), dbFileName, dbFile);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                boolean initialized = initialize(releaser, dbFile, preferences);
+                synchronized (lock) {
+                    state = initialized ? STATE_INITIALIZED : STATE_FAILED;
+                    lock.notifyAll();
+                    for (Handler handler : handlers) {
+                        handler.sendEmptyMessage(initialized ? MSG_INITIALIZED_DB : MSG_FAILED_DB);
+                    }
+                }
+            }
+        });
+    }
+
+    public static boolean isInitialized() {
+        synchronized (lock) {
+            return STATE_INITIALIZED == state;
+        }
+    }
+
+    /**
+     * Block until initializing is over(or started and over), must NOT be called in main thread.
+     *
+     * @return false if the database could not be initialized, it must not be used then
+     */
+    public static boolean awaitInitialized() {
+        synchronized (lock) {
+            while (STATE_IDLE == state || STATE_INITIALIZING == state) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return STATE_INITIALIZED == state;
+        }
+    }
+
+    private static boolean initialize(DatabaseReleaser releaser, File dbFile, SharedPreferences preferences) {
+        String shippedVersion = releaser.readShippedVersion();
+        boolean installed = dbFile.exists();
+        if (installed) {
+            String installedVersion = preferences.getString(PREF_DB_VERSION, null);
+            if (null == installedVersion && null != shippedVersion) {
+                //installed before versions were recorded, keep it(and its progress)
+                preferences.edit().putString(PREF_DB_VERSION, shippedVersion).apply();
+                installedVersion = shippedVersion;
+            }
+            if (null == shippedVersion || shippedVersion.equals(installedVersion)) {
+                return migrate();
+            }
+        }
+        try {
+            Connector.clearLitePalOpenHelperInstance();
+            String version = releaser.release(new DatabaseReleaser.OnProgressListener() {
+                @Override
+                public void onProgressUpdated(float percentage) {
+                    synchronized (lock) {
+                        for (Handler handler : handlers) {
+                            handler.obtainMessage(MSG_RELEASING_DB, (int) (percentage * 100), 0).sendToTarget();
+                        }
+                    }
+                }
+            });
+            //no helper was opened on the old file meanwhile, every user waits for the state
+            Connector.clearLitePalOpenHelperInstance();
+            preferences.edit().putString(PREF_DB_VERSION, version).apply();
+            ProgressCounter.invalidate();
+            LocalizedEntityCache.clear();
+        } catch (Exception e) {
+            e.printStackTrace();
+            if (!installed) {
+                return false;
+            }
+            //the installed database is left untouched, keep using it(update is retried next start)
+        }
+        return migrate();
+    }
+
+    private static boolean migrate() {
+        try {
+            DatabaseMigration.migrate();
+            return true;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package info.arybin.fearnotwords.model;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.litepal.tablemanager.Connector;
+
+/**
+ * Schema changes that LitePal can not express(eg. indexes), applied in order.
+ * <p>
+ * The version of LitePal(user_version) is managed by LitePal itself, thus the applied version
+ * of these migrations is recorded in a separate table inside the same database file, so a freshly
+ * released database is always migrated on its first open.
+ */
+public class DatabaseMigration {
+
+    private static final String TABLE_VERSION = "schema_migration";
+
+    /**
+     * MIGRATIONS[i] upgrades the schema from version i to version i + 1.
+     */
+    private static final String[][] MIGRATIONS = {
+            {
+                    "CREATE INDEX IF NOT EXISTS index_entity_expression ON entity (expression_id, language)",
+                    "CREATE INDEX IF NOT EXISTS index_pronounce_expression ON pronounce (expression_id, language)",
+                    "CREATE INDEX IF NOT EXISTS index_translation_expression ON translation (expression_id, language)",
+                    "CREATE INDEX IF NOT EXISTS index_expressionl_expression ON expressionl (expression_id)",
+                    "CREATE INDEX IF NOT EXISTS index_entityl_expressionl ON entityl (expressionl_id, language)",
+                    "CREATE INDEX IF NOT EXISTS index_entity_plan_plan ON entity_plan (plan_id, entity_id)",
+                    "CREATE INDEX IF NOT EXISTS index_entity_plan_entity ON entity_plan (entity_id, plan_id)",
+                    "CREATE INDEX IF NOT EXISTS index_plan_name ON plan (name)",
+                    "ANALYZE",
+            },
+            {
+                    "CREATE TABLE IF NOT EXISTS schedule (entity_id integer primary key, ease real not null, " +
+                            "interval integer not null, repetitions integer not null, due_at integer not null)",
+                    "CREATE INDEX IF NOT EXISTS index_schedule_due ON schedule (due_at)",
+            },
+    };
+
+    private DatabaseMigration() {
+    }
+
+    public static int getLatestVersion() {
+        return MIGRATIONS.length;
+    }
+
+    /**
+     * Bring the database up to the latest version, must NOT be called in main thread.
+     *
+     * @return the number of migrations applied
+     */
+    public static int migrate() {
+        return migrate(Connector.getDatabase());
+    }
+
+    public static int migrate(SQLiteDatabase db) {
+        int applied = 0;
+        db.beginTransaction();
+        try {
+            db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_VERSION + " (version integer not null)");
+            for (int version = readVersion(db); version < MIGRATIONS.length; version++) {
+                for (String sql : MIGRATIONS[version]) {
+                    db.execSQL(sql);
+                }
+                applied += 1;
+            }
+            if (applied > 0) {
+                db.execSQL("DELETE FROM " + TABLE_VERSION);
+                db.execSQL("INSERT INTO " + TABLE_VERSION + " (version) VALUES (" + MIGRATIONS.length + ")");
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return applied;
+    }
+
+    private static int readVersion(SQLiteDatabase db) {
+        Cursor cursor = db.rawQuery("SELECT MAX(version) FROM " + TABLE_VERSION, null);
+        try {
+            if (cursor.moveToFirst() && !cursor.isNull(0)) {
+                return cursor.getInt(0);
+            }
+            return 0;
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package info.arybin.fearnotwords.model;
+
+import android.content.res.AssetManager;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Releases the database shipped in assets/databases.
+ * <p>
+ * The asset is streamed through a fixed buffer into a temp file next to the target while its SHA-1
+ * is computed, the temp file is only renamed over the target after the digest matches the one
+ * shipped in "[name].sha1"(releasing fails if it is missing). The same digest is the content version of the shipped database.
+ * <p>
+ * When a database is installed already(eg. the shipped content was updated), the learning progress
+ * and review schedules in it are carried over into the temp file before the rename, matched by
+ * entity id, body and language(so a reused id never inherits another word's progress).
+ */
+public class DatabaseReleaser {
+
+    public interface OnProgressListener {
+        void onProgressUpdated(float percentage);
+    }
+
+    private static final String ASSET_DIR = "databases/";
+    private static final String SUFFIX_CHECKSUM = ".sha1";
+    private static final String SUFFIX_TEMP = ".tmp";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final String SQL_ATTACH_OLD = "ATTACH DATABASE ? AS old";
+    private static final String SQL_DETACH_OLD = "DETACH DATABASE old";
+    private static final String SQL_SAME_ENTITY = "o.id = entity.id AND o.body = entity.body AND o.language = entity.language";
+    private static final String SQL_CARRY_PROGRESS = "UPDATE entity SET " +
+            "progress = (SELECT o.progress FROM old.entity o WHERE " + SQL_SAME_ENTITY + "), " +
+            "update_at = (SELECT o.update_at FROM old.entity o WHERE " + SQL_SAME_ENTITY + ") " +
+            "WHERE EXISTS (SELECT 1 FROM old.entity o WHERE " + SQL_SAME_ENTITY + " AND o.progress <> 0)";
+    private static final String SQL_CARRY_SCHEDULE = "INSERT OR REPLACE INTO schedule " +
+            "(entity_id, ease, interval, repetitions, due_at) " +
+            "SELECT s.entity_id, s.ease, s.interval, s.repetitions, s.due_at FROM old.schedule s " +
+            "JOIN old.entity o ON o.id = s.entity_id " +
+            "JOIN entity ON " + SQL_SAME_ENTITY;
+    private static final String SQL_HAS_OLD_SCHEDULE =
+            "SELECT COUNT(*) FROM old.sqlite_master WHERE type = 'table' AND name = 'schedule'";
+
+    private final AssetManager assetManager;
+    private final String dbFileName;
+    private final File dbFile;
+
+    public DatabaseReleaser(AssetManager assetManager, String dbFileName, File dbFile) {
+        this.assetManager = assetManager;
+        this.dbFileName = dbFileName;
+        this.dbFile = dbFile;
+    }
+
+    /**
+     * @return the content version(SHA-1 in hex) of the shipped database, null if not shipped
+     */
+    public String readShippedVersion() {
+        try {
+            InputStream inputStream = assetManager.open(ASSET_DIR + dbFileName + SUFFIX_CHECKSUM);
+            try {
+                String line = new BufferedReader(new InputStreamReader(inputStream, "UTF-8")).readLine();
+                return null == line ? null : line.trim().toLowerCase();
+            } finally {
+                inputStream.close();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Must NOT be called in main thread.
+     *
+     * @return the content version of the released database
+     * @throws IOException if the copy failed, the checksum is not shipped or does not match
+     */
+    public String release(OnProgressListener listener) throws IOException {
+        String expected = readShippedVersion();
+        if (null == expected) {
+            //an unverifiable copy is never installed
+            throw new IOException("No checksum shipped for " + dbFileName);
+        }
+        File parent = dbFile.getParentFile();
+        if (!parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Can not create " + parent);
+        }
+        File tempFile = new File(parent, dbFile.getName() + SUFFIX_TEMP);
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+
+        InputStream inputStream = assetManager.open(ASSET_DIR + dbFileName);
+        FileOutputStream outputStream = new FileOutputStream(tempFile);
+        try {
+            //for assets this is the remaining length of the whole asset
+            long total = inputStream.available();
+            long copied = 0;
+            int lastPercent = -1;
+            ReadableByteChannel source = Channels.newChannel(inputStream);
+            FileChannel target = outputStream.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            int read;
+            while ((read = source.read(buffer)) != -1) {
+                buffer.flip();
+                digest.update(buffer.array(), 0, read);
+                while (buffer.hasRemaining()) {
+                    target.write(buffer);
+                }
+                buffer.clear();
+                copied += read;
+                if (null != listener && total > 0) {
+                    int percent = (int) (100 * copied / total);
+                    if (percent != lastPercent) {
+                        lastPercent = percent;
+                        listener.onProgressUpdated(Math.min(1f, percent / 100f));
+                    }
+                }
+            }
+            outputStream.getFD().sync();
+        } finally {
+            outputStream.close();
+            inputStream.close();
+        }
+
+        String actual = toHex(digest.digest());
+        if (!expected.equals(actual)) {
+            tempFile.delete();
+            throw new IOException("Checksum mismatch of " + dbFileName + ": " + actual + " != " + expected);
+        }
+
+        try {
+            carryOverProgress(tempFile);
+        } catch (IOException e) {
+            tempFile.delete();
+            throw e;
+        }
+
+        //stale journals must not be applied to the new file
+        new File(parent, dbFile.getName() + "-journal").delete();
+        new File(parent, dbFile.getName() + "-wal").delete();
+        new File(parent, dbFile.getName() + "-shm").delete();
+        if (!tempFile.renameTo(dbFile)) {
+            tempFile.delete();
+            throw new IOException("Can not rename " + tempFile + " to " + dbFile);
+        }
+        return actual;
+    }
+
+    /**
+     * Copy progress and schedules of the installed database(if any) into the verified temp file.
+     */
+    private void carryOverProgress(File tempFile) throws IOException {
+        if (!dbFile.exists()) {
+            return;
+        }
+        SQLiteDatabase db = null;
+        try {
+            db = SQLiteDatabase.openDatabase(tempFile.getPath(), null, SQLiteDatabase.OPEN_READWRITE);
+            //the schedule table is created by migrations
+            DatabaseMigration.migrate(db);
+            //ATTACH is not allowed inside a transaction
+            db.execSQL(SQL_ATTACH_OLD, new Object[]{dbFile.getPath()});
+            try {
+                db.beginTransaction();
+                try {
+                    db.execSQL(SQL_CARRY_PROGRESS);
+                    if (hasOldSchedule(db)) {
+                        db.execSQL(SQL_CARRY_SCHEDULE);
+                    }
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+            } finally {
+                db.execSQL(SQL_DETACH_OLD);
+            }
+        } catch (SQLiteException e) {
+            throw new IOException("Can not carry progress over to " + tempFile, e);
+        } finally {
+            if (null != db) {
+                db.close();
+            }
+        }
+    }
+
+    private static boolean hasOldSchedule(SQLiteDatabase db) {
+        Cursor cursor = db.rawQuery(SQL_HAS_OLD_SCHEDULE, null);
+        try {
+            return cursor.moveToFirst() && cursor.getInt(0) > 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16));
+            builder.append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,83 @@
+package info.arybin.fearnotwords.model;
+
+import android.database.Cursor;
+
+import org.litepal.crud.DataSupport;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import info.arybin.fearnotwords.core.Schedule;
+import info.arybin.fearnotwords.core.SpacedRepetitionQueue;
+
+/**
+ * ScheduleStore of SpacedRepetitionQueue backed by the schedule table.
+ * <p>
+ * Schedules are read in batches of MAX_IDS_PER_QUERY and written behind through ProgressJournal,
+ * so a pass/skip never touches the database in main thread.
+ */
+public class DatabaseScheduleStore implements SpacedRepetitionQueue.ScheduleStore<Memorable> {
+
+    private static final int MAX_IDS_PER_QUERY = 500;
+
+    private static final String SQL_SCHEDULE =
+            "SELECT entity_id, ease, interval, repetitions, due_at FROM schedule WHERE entity_id IN (%s)";
+
+    @Override
+    public Map<Memorable, Schedule> load(Collection<? extends Memorable> items) {
+        HashMap<Memorable, Schedule> result = new HashMap<>(items.size() * 2);
+        ArrayList<Memorable> chunk = new ArrayList<>(Math.min(items.size(), MAX_IDS_PER_QUERY));
+        for (Memorable item : items) {
+            chunk.add(item);
+            if (chunk.size() == MAX_IDS_PER_QUERY) {
+                loadChunk(chunk, result);
+                chunk.clear();
+            }
+        }
+        if (chunk.size() > 0) {
+            loadChunk(chunk, result);
+        }
+        return result;
+    }
+
+    @Override
+    public void save(Memorable item, Schedule schedule) {
+        ProgressJournal.getInstance().recordSchedule(item.getEntityID(), schedule.getEase(),
+                schedule.getInterval(), schedule.getRepetitions(), schedule.getDue());
+    }
+
+    private void loadChunk(ArrayList<Memorable> chunk, HashMap<Memorable, Schedule> result) {
+        HashMap<Long, Memorable> byID = new HashMap<>(chunk.size() * 2);
+        StringBuilder ids = new StringBuilder(chunk.size() * 6);
+        for (Memorable item : chunk) {
+            if (ids.length() > 0) {
+                ids.append(',');
+            }
+            ids.append(item.getEntityID());
+            byID.put(item.getEntityID(), item);
+        }
+
+        Cursor cursor = DataSupport.findBySQL(String.format(SQL_SCHEDULE, ids));
+        try {
+            while (cursor.moveToNext()) {
+                Memorable item = byID.get(cursor.getLong(0));
+                if (null != item) {
+                    result.put(item, new Schedule(cursor.getFloat(1), cursor.getInt(2),
+                            cursor.getInt(3), cursor.getLong(4)));
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+
+        //schedules recorded but not flushed yet are newer than the ones just read
+        for (Map.Entry<Long, Memorable> entry : byID.entrySet()) {
+            Schedule pending = ProgressJournal.getInstance().pendingSchedule(entry.getKey());
+            if (null != pending) {
+                result.put(entry.getValue(), pending);
+            }
+        }
+    }
+}
@@ -138,6 +138,11 @@ public class FakeEntity implements Memorable, Parcelable {
         return pronounce;
     }
 
+    @Override
+    public long getEntityID() {
+        return entityID;
+    }
+
     @Override
     public void setMemoryProgress(int progress) {
         this.progress = progress;
@@ -1,16 +1,22 @@
 package info.arybin.fearnotwords.model;
 
+import android.database.Cursor;
 import android.os.AsyncTask;
 
 import org.litepal.crud.DataSupport;
 
 import java.util.ArrayList;
+import java.util.concurrent.Callable;
 
 import info.arybin.fearnotwords.model.orm.Entity;
 import info.arybin.fearnotwords.model.orm.Plan;
 
 
-public class LoadPlanTask extends AsyncTask<LoadPlanTask.Type, Float, ArrayList<LocalizedEntity>> {
+/**
+ * Loads a plan page by page, every page is delivered as soon as it is hydrated
+ * so the first page can be shown without waiting for the rest of the plan.
+ */
+public class LoadPlanTask extends AsyncTask<LoadPlanTask.Type, ArrayList<LocalizedEntity>, Integer> {
     public enum Type {
         NEW(Entity.PROGRESS_NEW),
         SKIPPED(Entity.PROGRESS_SKIPPED),
@@ -27,85 +33,177 @@ public class LoadPlanTask extends AsyncTask<LoadPlanTask.Type, Float, ArrayList<
     }
 
     public interface OnProgressListener {
-        void onProgressUpdated(float percentage);
-
-        void onProgressCompleted(ArrayList<LocalizedEntity> result);
+        /**
+         * Called in main thread for each page, in order(never after the task is cancelled).
+         *
+         * @param task       the task delivering the page, a listener may have started another one
+         * @param percentage loaded/total after this page
+         */
+        void onPageLoaded(LoadPlanTask task, ArrayList<LocalizedEntity> page, float percentage);
+
+        /**
+         * @param count the number of entities loaded(0 if nothing matched)
+         */
+        void onProgressCompleted(LoadPlanTask task, int count);
     }
 
 
+    public static final int DEFAULT_PAGE_SIZE = 50;
+
+    private static final String SQL_PLAN = "SELECT id, to_language FROM plan WHERE name = ?";
+
+    private static final String SQL_WANTED_IDS =
+            "SELECT ep.entity_id FROM entity_plan ep JOIN entity e ON e.id = ep.entity_id " +
+                    "WHERE ep.plan_id = ? AND e.progress IN (%s) ORDER BY ep.entity_id";
+
     private String planName;
     private OnProgressListener listener;
-    private int updateProgressThreshold;
+    private int pageSize;
 
+    private volatile String language;
+    private volatile int total;
+    private int loaded;
 
-    private LoadPlanTask(String planName, OnProgressListener listener, int updateProgressThreshold) {
+
+    private LoadPlanTask(String planName, OnProgressListener listener, int pageSize) {
         this.planName = planName;
         this.listener = listener;
-        this.updateProgressThreshold = updateProgressThreshold;
+        this.pageSize = pageSize;
     }
 
     public static LoadPlanTask setupFor(String planName, OnProgressListener listener) {
-        if (null != listener && null != DataSupport.where("name == ?", planName).findFirst(Plan.class)) {
-            return new LoadPlanTask(planName, listener, 30);
-        }
-        return null;
+        return setupFor(planName, listener, DEFAULT_PAGE_SIZE);
     }
 
-    public static LoadPlanTask setupFor(String planName, OnProgressListener listener, int updateProgressThreshold) {
+    public static LoadPlanTask setupFor(String planName, OnProgressListener listener, int pageSize) {
         if (null != listener
-                && updateProgressThreshold > 0
+                && pageSize > 0
                 && null != DataSupport.where("name == ?", planName).findFirst(Plan.class)) {
-            return new LoadPlanTask(planName, listener, updateProgressThreshold);
+            return new LoadPlanTask(planName, listener, pageSize);
         }
         return null;
     }
 
+    public String getPlanName() {
+        return planName;
+    }
+
+    /**
+     * @return the language of the loaded entities, available once the first page is delivered
+     */
+    public String getLanguage() {
+        return language;
+    }
+
     @Override
-    protected ArrayList<LocalizedEntity> doInBackground(Type... types) {
-        ArrayList<LocalizedEntity> result = new ArrayList<>();
-        Plan plan = DataSupport.where("name == ?", planName).findFirst(Plan.class, true);
-        int total = 0;
-        for (Entity entity : plan.getEntities()) {
-            boolean wanted = false;
-            for (Type type : types) {
-                if (entity.getProgress() == type.getProgress()) {
-                    wanted = true;
-                    break;
+    @SuppressWarnings("unchecked")
+    protected Integer doInBackground(final Type... types) {
+        if (!DatabaseInitializer.awaitInitialized()) {
+            return 0;
+        }
+        ArrayList<Long> wantedIDs;
+        try {
+            //progress recorded just before(eg. flushed asynchronously in onPause) must be in database
+            wantedIDs = ProgressJournal.getInstance().flushThen(null, new Callable<ArrayList<Long>>() {
+                @Override
+                public ArrayList<Long> call() throws Exception {
+                    return queryWantedIDs(types);
                 }
+            });
+        } catch (Exception e) {
+            e.printStackTrace();
+            wantedIDs = queryWantedIDs(types);
+        }
+        excludePending(wantedIDs, types);
+        total = wantedIDs.size();
+        int count = 0;
+        for (int from = 0; from < total && !isCancelled(); from += pageSize) {
+            int to = Math.min(from + pageSize, total);
+            ArrayList<LocalizedEntity> page = LocalizedEntityLoader.load(wantedIDs.subList(from, to), language);
+            count += page.size();
+            publishProgress(page);
+        }
+
+        return count;
+    }
+
+
+    /**
+     * Only ids of the wanted entities are read(through the plan join table),
+     * nothing else of the plan is mapped(package private for PlanLoadingBenchmark).
+     */
+    ArrayList<Long> queryWantedIDs(Type... types) {
+        long planID;
+        Cursor cursor = DataSupport.findBySQL(SQL_PLAN, planName);
+        try {
+            if (!cursor.moveToFirst()) {
+                return new ArrayList<>();
             }
-            if (wanted) {
-                total += 1;
-            }
+            planID = cursor.getLong(0);
+            language = cursor.getString(1);
+        } finally {
+            cursor.close();
         }
-        for (Entity entity : plan.getEntities()) {
-            boolean wanted = false;
-            for (Type type : types) {
-                if (entity.getProgress() == type.getProgress()) {
-                    wanted = true;
-                    break;
-                }
+
+        StringBuilder progresses = new StringBuilder();
+        for (Type type : types) {
+            if (progresses.length() > 0) {
+                progresses.append(',');
             }
-            if (wanted) {
-                result.add(LocalizedEntity.create(entity, plan.getToLanguage()));
-                if (result.size() % updateProgressThreshold == 0) {
-                    publishProgress(1f * result.size() / total);
-                }
+            progresses.append(type.getProgress());
+        }
+        cursor = DataSupport.findBySQL(String.format(SQL_WANTED_IDS, progresses), String.valueOf(planID));
+        try {
+            ArrayList<Long> wantedIDs = new ArrayList<>(cursor.getCount());
+            while (cursor.moveToNext()) {
+                wantedIDs.add(cursor.getLong(0));
             }
+            return wantedIDs;
+        } finally {
+            cursor.close();
         }
+    }
 
-        return result;
+    /**
+     * Drop the entities whose progress recorded but not written yet is no longer wanted.
+     */
+    private static void excludePending(ArrayList<Long> wantedIDs, Type... types) {
+        ProgressJournal journal = ProgressJournal.getInstance();
+        int kept = 0;
+        for (int i = 0; i < wantedIDs.size(); i++) {
+            Long entityID = wantedIDs.get(i);
+            int progress = journal.pendingProgress(entityID, -1);
+            if (-1 == progress || isWanted(progress, types)) {
+                wantedIDs.set(kept++, entityID);
+            }
+        }
+        wantedIDs.subList(kept, wantedIDs.size()).clear();
     }
 
+    private static boolean isWanted(int progress, Type... types) {
+        for (Type type : types) {
+            if (type.getProgress() == progress) {
+                return true;
+            }
+        }
+        return false;
+    }
 
     @Override
-    protected void onProgressUpdate(Float... values) {
+    @SuppressWarnings("unchecked")
+    protected void onProgressUpdate(ArrayList<LocalizedEntity>... values) {
         super.onProgressUpdate(values);
-        listener.onProgressUpdated(values[0]);
+        //pages published before cancel() are still posted to main thread
+        if (isCancelled()) {
+            return;
+        }
+        loaded += values[0].size();
+        listener.onPageLoaded(this, values[0], total > 0 ? 1f * loaded / total : 1f);
     }
 
     @Override
-    protected void onPostExecute(ArrayList<LocalizedEntity> localizedEntities) {
-        super.onPostExecute(localizedEntities);
-        listener.onProgressCompleted(localizedEntities);
+    protected void onPostExecute(Integer count) {
+        super.onPostExecute(count);
+        listener.onProgressCompleted(this, count);
     }
 }
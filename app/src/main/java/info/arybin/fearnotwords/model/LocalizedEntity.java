@@ -49,7 +49,7 @@ public class LocalizedEntity implements Memorable, Parcelable {
         in.readStringArray(exampleTranslations);
         progress = in.readInt();
         long updateTimeLong = in.readLong();
-        updateTime = new Date(updateTimeLong);
+        updateTime = updateTimeLong < 0 ? null : new Date(updateTimeLong);
 
     }
 
@@ -63,7 +63,7 @@ public class LocalizedEntity implements Memorable, Parcelable {
         dest.writeStringArray(examples);
         dest.writeStringArray(exampleTranslations);
         dest.writeInt(progress);
-        dest.writeLong(updateTime.getTime());
+        dest.writeLong(null == updateTime ? -1 : updateTime.getTime());
     }
 
 
@@ -81,7 +81,12 @@ public class LocalizedEntity implements Memorable, Parcelable {
 
     public static LocalizedEntity create(Entity entity, String language) {
         if (null != entity && null != language) {
-            return new LocalizedEntity(entity, language);
+            LocalizedEntity cached = LocalizedEntityCache.get(entity.getId(), language);
+            if (null == cached) {
+                cached = new LocalizedEntity(entity, language);
+                LocalizedEntityCache.put(cached, language);
+            }
+            return cached;
         }
         return null;
     }
@@ -92,6 +97,22 @@ public class LocalizedEntity implements Memorable, Parcelable {
     }
 
 
+    /**
+     * Used by LocalizedEntityLoader which has already resolved everything in batch.
+     */
+    LocalizedEntity(long entityID, String body, String pronounce, String translation,
+                    String[] examples, String[] exampleTranslations,
+                    int progress, Date updateTime) {
+        this.entityID = entityID;
+        this.body = body;
+        this.pronounce = pronounce;
+        this.translation = translation;
+        this.examples = examples;
+        this.exampleTranslations = exampleTranslations;
+        this.progress = progress;
+        this.updateTime = updateTime;
+    }
+
     private LocalizedEntity(Entity entity, String language) {
         Pronounce tmpPronounce;
         Translation tmpTranslation;
@@ -161,11 +182,12 @@ public class LocalizedEntity implements Memorable, Parcelable {
         return progress;
     }
 
-    public int save() {
-        Entity entity = new Entity();
-        entity.setProgress(progress);
-        entity.setUpdateTime(updateTime);
-        return entity.update(entityID);
+    /**
+     * The progress is written behind by ProgressJournal.
+     */
+    public void save() {
+        ProgressJournal.getInstance().record(entityID, progress,
+                null == updateTime ? System.currentTimeMillis() : updateTime.getTime());
     }
 
     public Date getUpdateTime() {
@@ -222,6 +244,11 @@ public class LocalizedEntity implements Memorable, Parcelable {
         return String.format("%s\n%s\n%s", body, pronounce, translation);
     }
 
+    @Override
+    public long getEntityID() {
+        return entityID;
+    }
+
     @Override
     public void setMemoryProgress(int progress) {
         setProgress(progress);
@@ -0,0 +1,103 @@
+package info.arybin.fearnotwords.model;
+
+import android.content.ComponentCallbacks2;
+import android.util.LruCache;
+
+/**
+ * Process wide LRU cache of LocalizedEntities keyed by (entityID, language), bounded by
+ * an estimated byte weight of the strings held.
+ * <p>
+ * The cached instances are the ones handed out to sessions, so progress set on them is
+ * seen by every later user of the cache without any extra bookkeeping.
+ */
+public class LocalizedEntityCache {
+
+    private static final int ENTRY_OVERHEAD = 96;
+    private static final int STRING_OVERHEAD = 40;
+
+    private static final Cache cache = new Cache((int) Math.min(Integer.MAX_VALUE,
+            Runtime.getRuntime().maxMemory() / 16));
+
+    private LocalizedEntityCache() {
+    }
+
+    public static LocalizedEntity get(long entityID, String language) {
+        return cache.get(keyOf(entityID, language));
+    }
+
+    public static void put(LocalizedEntity entity, String language) {
+        if (null != entity && null != language) {
+            cache.put(keyOf(entity.getEntityID(), language), entity);
+        }
+    }
+
+    public static void clear() {
+        cache.evictAll();
+    }
+
+    /**
+     * @param level see ComponentCallbacks2#onTrimMemory
+     */
+    public static void onTrimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+            cache.evictAll();
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            cache.trimToSize(cache.maxSize() / 2);
+        }
+    }
+
+    public static int hitCount() {
+        return cache.hitCount();
+    }
+
+    public static int missCount() {
+        return cache.missCount();
+    }
+
+    public static int evictionCount() {
+        return cache.evictionCount();
+    }
+
+    /**
+     * @return estimated bytes currently held
+     */
+    public static int size() {
+        return cache.size();
+    }
+
+    public static int maxSize() {
+        return cache.maxSize();
+    }
+
+    private static String keyOf(long entityID, String language) {
+        return language + ':' + entityID;
+    }
+
+    static int weightOf(LocalizedEntity entity) {
+        int weight = ENTRY_OVERHEAD
+                + weightOf(entity.getOriginal())
+                + weightOf(entity.getPronounce())
+                + weightOf(entity.getTranslation());
+        for (int i = 0; i < entity.getExampleCount(); i++) {
+            Translatable example = entity.getExampleAt(i);
+            weight += weightOf(example.getOriginal()) + weightOf(example.getTranslation());
+        }
+        return weight;
+    }
+
+    private static int weightOf(CharSequence sequence) {
+        return null == sequence ? 0 : STRING_OVERHEAD + 2 * sequence.length();
+    }
+
+
+    private static class Cache extends LruCache<String, LocalizedEntity> {
+        Cache(int maxBytes) {
+            super(maxBytes);
+        }
+
+        @Override
+        protected int sizeOf(String key, LocalizedEntity entity) {
+            return weightOf(entity);
+        }
+    }
+}
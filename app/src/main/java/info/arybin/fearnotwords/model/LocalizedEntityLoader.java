@@ -0,0 +1,183 @@
+package info.arybin.fearnotwords.model;
+
+import android.database.Cursor;
+import android.support.v4.util.LongSparseArray;
+
+import org.litepal.crud.DataSupport;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Builds many LocalizedEntities at once.
+ * <p>
+ * Instead of walking Entity -> Expression -> Pronounce/Translation/ExpressionL -> EntityL
+ * (several queries per entity), the pronounces, translations and example pairs of a whole
+ * batch of entities are fetched with a few set-based JOIN queries, then every LocalizedEntity
+ * is assembled in a single pass.
+ */
+public class LocalizedEntityLoader {
+
+    /**
+     * Keep the IN clause well below SQLite's statement limits.
+     */
+    private static final int MAX_IDS_PER_QUERY = 500;
+
+    private static final String SQL_ENTITY =
+            "SELECT id, body, progress, update_at FROM entity WHERE id IN (%s)";
+
+    private static final String SQL_PRONOUNCE =
+            "SELECT e.id, p.body FROM entity e " +
+                    "JOIN pronounce p ON p.expression_id = e.expression_id AND p.language = e.language " +
+                    "WHERE e.id IN (%s)";
+
+    private static final String SQL_TRANSLATION =
+            "SELECT e.id, t.body FROM entity e " +
+                    "JOIN translation t ON t.expression_id = e.expression_id AND t.language = ? " +
+                    "WHERE e.id IN (%s)";
+
+    //one pair per expressionL(the first entityL of each language), an expressionL with several
+    //entityLs in the same language must not multiply its examples
+    private static final String SQL_EXAMPLE =
+            "SELECT e.id, o.body, t.body FROM entity e " +
+                    "JOIN expressionl x ON x.expression_id = e.expression_id " +
+                    "JOIN entityl o ON o.id = (SELECT MIN(id) FROM entityl " +
+                    "WHERE expressionl_id = x.id AND language = e.language) " +
+                    "JOIN entityl t ON t.id = (SELECT MIN(id) FROM entityl " +
+                    "WHERE expressionl_id = x.id AND language = ?) " +
+                    "WHERE e.id IN (%s) ORDER BY e.id, x.id";
+
+    private LocalizedEntityLoader() {
+    }
+
+    /**
+     * @param entityIDs ids of the entities to load
+     * @param language  language of the pronounce/translation of examples
+     * @return the loaded entities, in the same order as entityIDs(missing ids are skipped)
+     */
+    public static ArrayList<LocalizedEntity> load(List<Long> entityIDs, String language) {
+        ArrayList<LocalizedEntity> result = new ArrayList<>(entityIDs.size());
+        if (null == language) {
+            return result;
+        }
+
+        //only entities missing in LocalizedEntityCache are read from database
+        LongSparseArray<LocalizedEntity> loaded = new LongSparseArray<>(entityIDs.size());
+        ArrayList<Long> missingIDs = new ArrayList<>();
+        for (Long entityID : entityIDs) {
+            LocalizedEntity cached = LocalizedEntityCache.get(entityID, language);
+            if (null == cached) {
+                missingIDs.add(entityID);
+            } else {
+                loaded.put(entityID, cached);
+            }
+        }
+        for (int from = 0; from < missingIDs.size(); from += MAX_IDS_PER_QUERY) {
+            int to = Math.min(from + MAX_IDS_PER_QUERY, missingIDs.size());
+            loadChunk(missingIDs.subList(from, to), language, loaded);
+        }
+
+        for (Long entityID : entityIDs) {
+            LocalizedEntity entity = loaded.get(entityID);
+            if (null != entity) {
+                result.add(entity);
+            }
+        }
+        return result;
+    }
+
+    private static void loadChunk(List<Long> entityIDs, String language, LongSparseArray<LocalizedEntity> loaded) {
+        String ids = joinIDs(entityIDs);
+        LongSparseArray<Row> rows = new LongSparseArray<>(entityIDs.size());
+
+        Cursor cursor = DataSupport.findBySQL(String.format(SQL_ENTITY, ids));
+        try {
+            while (cursor.moveToNext()) {
+                Row row = new Row();
+                row.body = cursor.getString(1);
+                row.progress = cursor.getInt(2);
+                row.updateTime = cursor.isNull(3) ? null : new Date(cursor.getLong(3));
+                rows.put(cursor.getLong(0), row);
+            }
+        } finally {
+            cursor.close();
+        }
+
+        cursor = DataSupport.findBySQL(String.format(SQL_PRONOUNCE, ids));
+        try {
+            while (cursor.moveToNext()) {
+                Row row = rows.get(cursor.getLong(0));
+                if (null != row && null == row.pronounce) {
+                    row.pronounce = cursor.getString(1);
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+
+        cursor = DataSupport.findBySQL(String.format(SQL_TRANSLATION, ids), language);
+        try {
+            while (cursor.moveToNext()) {
+                Row row = rows.get(cursor.getLong(0));
+                if (null != row && null == row.translation) {
+                    row.translation = cursor.getString(1);
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+
+        cursor = DataSupport.findBySQL(String.format(SQL_EXAMPLE, ids), language);
+        try {
+            while (cursor.moveToNext()) {
+                Row row = rows.get(cursor.getLong(0));
+                if (null != row) {
+                    row.examples.add(cursor.getString(1));
+                    row.exampleTranslations.add(cursor.getString(2));
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+
+        for (Long entityID : entityIDs) {
+            Row row = rows.get(entityID);
+            if (null != row) {
+                LocalizedEntity entity = row.build(entityID);
+                //progress recorded but not flushed yet is newer than the one just read
+                ProgressJournal.getInstance().applyPending(entity);
+                LocalizedEntityCache.put(entity, language);
+                loaded.put(entityID, entity);
+            }
+        }
+    }
+
+    private static String joinIDs(List<Long> entityIDs) {
+        StringBuilder builder = new StringBuilder(entityIDs.size() * 6);
+        for (Long entityID : entityIDs) {
+            if (builder.length() > 0) {
+                builder.append(',');
+            }
+            builder.append(entityID.longValue());
+        }
+        return builder.toString();
+    }
+
+    private static class Row {
+        String body;
+        String pronounce;
+        String translation;
+        int progress;
+        Date updateTime;
+        ArrayList<String> examples = new ArrayList<>(2);
+        ArrayList<String> exampleTranslations = new ArrayList<>(2);
+
+        LocalizedEntity build(long entityID) {
+            return new LocalizedEntity(entityID, body, pronounce, translation,
+                    examples.toArray(new String[examples.size()]),
+                    exampleTranslations.toArray(new String[exampleTranslations.size()]),
+                    progress, updateTime);
+        }
+    }
+}
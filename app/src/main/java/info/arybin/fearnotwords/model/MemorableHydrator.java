@@ -0,0 +1,43 @@
+package info.arybin.fearnotwords.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import info.arybin.fearnotwords.core.IdOperableQueue;
+
+/**
+ * Hydrator of IdOperableQueue turning entity ids into LocalizedEntities through
+ * LocalizedEntityLoader(thus LocalizedEntityCache and ProgressJournal are honored).
+ */
+public class MemorableHydrator implements IdOperableQueue.Hydrator<Memorable> {
+
+    private static final String[] NO_EXAMPLES = new String[0];
+
+    private final String language;
+
+    public MemorableHydrator(String language) {
+        this.language = language;
+    }
+
+    @Override
+    public long idOf(Memorable item) {
+        return item.getEntityID();
+    }
+
+    @Override
+    public List<Memorable> hydrate(long[] ids) {
+        ArrayList<Long> entityIDs = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            entityIDs.add(id);
+        }
+        return new ArrayList<Memorable>(LocalizedEntityLoader.load(entityIDs, language));
+    }
+
+    /**
+     * An empty entity(no body/translation/examples) keeping only the id.
+     */
+    @Override
+    public Memorable placeholderOf(long id) {
+        return new LocalizedEntity(id, "", null, null, NO_EXAMPLES, NO_EXAMPLES, 0, null);
+    }
+}
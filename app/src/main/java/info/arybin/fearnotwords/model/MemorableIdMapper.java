@@ -0,0 +1,78 @@
+package info.arybin.fearnotwords.model;
+
+import android.support.v4.util.LongSparseArray;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import info.arybin.fearnotwords.core.IdMapper;
+import info.arybin.fearnotwords.core.LongDeque;
+
+/**
+ * IdMapper between the Memorables of a session and their entity ids, it also remembers which
+ * Memorables were resolved, so those missing in a snapshot(eg. appended after it was taken)
+ * can be appended to the restored queue.
+ */
+public class MemorableIdMapper implements IdMapper<Memorable> {
+
+    private final LongSparseArray<Memorable> memorables;
+    //ids in the order the Memorables were added, LongSparseArray keeps them sorted
+    private final LongDeque order;
+    private final LongSparseArray<Memorable> resolved;
+
+    /**
+     * For writing snapshots only, itemOf() resolves nothing.
+     */
+    public MemorableIdMapper() {
+        this(new ArrayList<Memorable>(0));
+    }
+
+    public MemorableIdMapper(List<? extends Memorable> memorables) {
+        this.memorables = new LongSparseArray<>(memorables.size());
+        order = new LongDeque(memorables.size());
+        append(memorables);
+        resolved = new LongSparseArray<>(memorables.size());
+    }
+
+    /**
+     * Keep itemOf() able to resolve Memorables appended to the session later.
+     */
+    public void append(Collection<? extends Memorable> appended) {
+        for (Memorable memorable : appended) {
+            long id = memorable.getEntityID();
+            if (memorables.indexOfKey(id) < 0) {
+                order.add(id);
+            }
+            memorables.put(id, memorable);
+        }
+    }
+
+    @Override
+    public long idOf(Memorable item) {
+        return item.getEntityID();
+    }
+
+    @Override
+    public Memorable itemOf(long id) {
+        Memorable memorable = memorables.get(id);
+        if (null != memorable) {
+            resolved.put(id, memorable);
+        }
+        return memorable;
+    }
+
+    /**
+     * @return the Memorables never asked for through itemOf(), in the order they were added
+     */
+    public ArrayList<Memorable> getUnresolved() {
+        ArrayList<Memorable> result = new ArrayList<>();
+        for (int i = 0; i < order.size(); i++) {
+            long id = order.get(i);
+            if (resolved.indexOfKey(id) < 0) {
+                result.add(memorables.get(id));
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,152 @@
+package info.arybin.fearnotwords.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The Memorables loaded for one memorize session, shared in process by id(see SessionRepository)
+ * instead of being copied through Bundles.
+ * <p>
+ * Note: NOT THREAD SAFE(ONLY ACCESS IN MAIN THREAD)
+ */
+public class MemorizeSession {
+
+    public interface OnAppendListener {
+        void onAppended(List<? extends Memorable> appended);
+
+        /**
+         * All Memorables of a session rebuilt by SessionRepository#restore were appended.
+         */
+        void onRestored();
+    }
+
+    public interface OnCloseListener {
+        /**
+         * The session was closed by SessionRepository#close, nothing should be appended any more.
+         */
+        void onClosed(MemorizeSession session);
+    }
+
+    private final long id;
+    //only unknown while a session is being restored, see SessionRepository#restore
+    private String planName;
+    private String language;
+    private final ArrayList<Memorable> memorables = new ArrayList<>();
+    private OnAppendListener listener;
+    private OnCloseListener closeListener;
+    private boolean restoring = false;
+    private boolean closed = false;
+    //state of the queue when the fragment was saved last, see SessionRepository#save
+    private byte[] queueSnapshot;
+
+    MemorizeSession(long id, String planName, String language) {
+        this.id = id;
+        this.planName = planName;
+        this.language = language;
+    }
+
+    public long getID() {
+        return id;
+    }
+
+    public String getPlanName() {
+        return planName;
+    }
+
+    public String getLanguage() {
+        return language;
+    }
+
+    public List<Memorable> getMemorables() {
+        return memorables;
+    }
+
+    public void append(Collection<? extends Memorable> page) {
+        if (closed || page.size() == 0) {
+            return;
+        }
+        int from = memorables.size();
+        memorables.addAll(page);
+        if (null != listener) {
+            listener.onAppended(memorables.subList(from, memorables.size()));
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    void close() {
+        closed = true;
+        listener = null;
+        if (null != closeListener) {
+            OnCloseListener closing = closeListener;
+            closeListener = null;
+            closing.onClosed(this);
+        }
+    }
+
+    public boolean isRestoring() {
+        return restoring;
+    }
+
+    void restoreHeader(String planName, String language) {
+        this.planName = planName;
+        this.language = language;
+    }
+
+    void startRestoring() {
+        restoring = true;
+    }
+
+    void finishRestoring() {
+        restoring = false;
+        if (null != listener) {
+            listener.onRestored();
+        }
+    }
+
+    /**
+     * Keep the queue state(eg. in onSaveInstanceState) for the recreated fragment, it is written
+     * along with the session by SessionRepository#save.
+     */
+    public void setQueueSnapshot(byte[] snapshot) {
+        queueSnapshot = snapshot;
+    }
+
+    /**
+     * @return the queue state kept last(or restored from file), null if none, it is cleared
+     */
+    public byte[] takeQueueSnapshot() {
+        byte[] snapshot = queueSnapshot;
+        queueSnapshot = null;
+        return snapshot;
+    }
+
+    byte[] getQueueSnapshot() {
+        return queueSnapshot;
+    }
+
+    public void setOnAppendListener(OnAppendListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * eg. the one appending pages in background stops once the session is closed.
+     */
+    public void setOnCloseListener(OnCloseListener closeListener) {
+        this.closeListener = closeListener;
+    }
+
+    /**
+     * @return the ids of all Memorables, enough to rebuild this session after process death
+     */
+    public long[] getEntityIDs() {
+        long[] ids = new long[memorables.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = memorables.get(i).getEntityID();
+        }
+        return ids;
+    }
+}
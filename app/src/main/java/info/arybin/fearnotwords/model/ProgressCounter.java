@@ -0,0 +1,156 @@
+package info.arybin.fearnotwords.model;
+
+import android.database.Cursor;
+import android.util.SparseIntArray;
+
+import org.litepal.crud.DataSupport;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.concurrent.Callable;
+
+/**
+ * Number of entities of each progress in a plan.
+ * <p>
+ * The counts are read once with a single GROUP BY query, then kept in memory and updated in place
+ * by onProgressChanged() as progress is recorded, so they never need to be read again.
+ * <p>
+ * The query runs in the ProgressJournal thread right after a flush, changes recorded(through
+ * ProgressJournal#record(String, long, int, int)) after the flush took its changes are kept as
+ * deltas and applied on top of the queried counts.
+ * <p>
+ * An entity may belong to several plans, but only the plan it is memorized in is known when its
+ * progress changes. That plan is updated in place, the counts of every other plan are dropped and
+ * queried again by the next load(). A change whose plan is unknown(eg. LocalizedEntity#save())
+ * drops every count.
+ */
+public class ProgressCounter {
+
+    private static final String SQL_COUNT =
+            "SELECT e.progress, COUNT(*) FROM entity_plan ep " +
+                    "JOIN plan p ON p.id = ep.plan_id " +
+                    "JOIN entity e ON e.id = ep.entity_id " +
+                    "WHERE p.name = ? GROUP BY e.progress";
+
+    private static final HashMap<String, SparseIntArray> cache = new HashMap<>();
+    //plan -> (progress -> count delta) of changes not in database while its counts are queried
+    private static final HashMap<String, SparseIntArray> loadingDeltas = new HashMap<>();
+
+    private ProgressCounter() {
+    }
+
+    /**
+     * @return the cached counts(progress -> count) of the plan, null if not loaded yet
+     */
+    public static synchronized SparseIntArray getCached(String planName) {
+        SparseIntArray counts = cache.get(planName);
+        return null == counts ? null : counts.clone();
+    }
+
+    /**
+     * Must NOT be called in main thread unless getCached() returned non null.
+     *
+     * @return the counts(progress -> count) of the plan, empty if the database is not available
+     */
+    public static SparseIntArray load(final String planName) {
+        SparseIntArray counts = getCached(planName);
+        if (null != counts) {
+            return counts;
+        }
+        if (!DatabaseInitializer.awaitInitialized()) {
+            return new SparseIntArray(0);
+        }
+        try {
+            return ProgressJournal.getInstance().flushThen(new Runnable() {
+                @Override
+                public void run() {
+                    startCountingDeltas(planName);
+                }
+            }, new Callable<SparseIntArray>() {
+                @Override
+                public SparseIntArray call() throws Exception {
+                    return cache(planName, query(planName));
+                }
+            });
+        } catch (Exception e) {
+            //pending changes could not be written, count what is in database without caching it
+            e.printStackTrace();
+            synchronized (ProgressCounter.class) {
+                loadingDeltas.remove(planName);
+            }
+            return query(planName);
+        }
+    }
+
+    private static SparseIntArray query(String planName) {
+        SparseIntArray counts = new SparseIntArray(3);
+        Cursor cursor = DataSupport.findBySQL(SQL_COUNT, planName);
+        try {
+            while (cursor.moveToNext()) {
+                counts.put(cursor.getInt(0), cursor.getInt(1));
+            }
+        } finally {
+            cursor.close();
+        }
+        return counts;
+    }
+
+    private static synchronized void startCountingDeltas(String planName) {
+        if (!cache.containsKey(planName) && !loadingDeltas.containsKey(planName)) {
+            loadingDeltas.put(planName, new SparseIntArray(3));
+        }
+    }
+
+    private static synchronized SparseIntArray cache(String planName, SparseIntArray counts) {
+        SparseIntArray deltas = loadingDeltas.remove(planName);
+        if (null == deltas && !cache.containsKey(planName)) {
+            //dropped while querying, a change after the flush may be missing, queried again next time
+            return counts;
+        }
+        if (!cache.containsKey(planName)) {
+            if (null != deltas) {
+                for (int i = 0; i < deltas.size(); i++) {
+                    int progress = deltas.keyAt(i);
+                    counts.put(progress, Math.max(0, counts.get(progress) + deltas.valueAt(i)));
+                }
+            }
+            cache.put(planName, counts);
+        }
+        return cache.get(planName).clone();
+    }
+
+    /**
+     * @param planName the plan the entity was memorized in, the counts of other plans are dropped
+     */
+    public static synchronized void onProgressChanged(String planName, int fromProgress, int toProgress) {
+        if (fromProgress == toProgress) {
+            return;
+        }
+        cache.keySet().retainAll(Collections.singleton(planName));
+        loadingDeltas.keySet().retainAll(Collections.singleton(planName));
+        SparseIntArray counts = cache.get(planName);
+        if (null != counts) {
+            counts.put(fromProgress, Math.max(0, counts.get(fromProgress) - 1));
+            counts.put(toProgress, counts.get(toProgress) + 1);
+            return;
+        }
+        SparseIntArray deltas = loadingDeltas.get(planName);
+        if (null != deltas) {
+            deltas.put(fromProgress, deltas.get(fromProgress) - 1);
+            deltas.put(toProgress, deltas.get(toProgress) + 1);
+        }
+    }
+
+    public static synchronized void invalidate() {
+        cache.clear();
+        loadingDeltas.clear();
+    }
+
+    public static int total(SparseIntArray counts) {
+        int total = 0;
+        for (int i = 0; i < counts.size(); i++) {
+            total += counts.valueAt(i);
+        }
+        return total;
+    }
+}
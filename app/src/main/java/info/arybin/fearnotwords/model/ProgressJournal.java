@@ -0,0 +1,289 @@
+package info.arybin.fearnotwords.model;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import org.litepal.tablemanager.Connector;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import info.arybin.fearnotwords.core.Schedule;
+
+/**
+ * Write-behind journal of memory progress(and review Schedules).
+ * <p>
+ * Changes are kept in memory(repeated changes of the same entity are coalesced) and flushed
+ * in a single transaction on a background thread, either FLUSH_DELAY after the first pending
+ * change or whenever flush() is called(eg. session end/onPause).
+ */
+public class ProgressJournal {
+
+    private static final long FLUSH_DELAY = 30;
+
+    private static final String SQL_UPDATE = "UPDATE entity SET progress = ?, update_at = ? WHERE id = ?";
+    private static final String SQL_SCHEDULE = "INSERT OR REPLACE INTO schedule " +
+            "(entity_id, ease, interval, repetitions, due_at) VALUES (?, ?, ?, ?, ?)";
+
+    private static ProgressJournal instance;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    private HashMap<Long, Change> pending = new HashMap<>();
+    private HashMap<Long, Change> flushing = new HashMap<>();
+    private boolean flushScheduled = false;
+
+    private ProgressJournal() {
+    }
+
+    public static synchronized ProgressJournal getInstance() {
+        if (null == instance) {
+            instance = new ProgressJournal();
+        }
+        return instance;
+    }
+
+    public void record(long entityID, int progress) {
+        record(entityID, progress, System.currentTimeMillis());
+    }
+
+    /**
+     * Record a progress change and count it in ProgressCounter atomically, so a concurrent
+     * ProgressCounter#load() counts it exactly once(either from database or as a change after it).
+     */
+    public synchronized void record(String planName, long entityID, int fromProgress, int progress) {
+        ProgressCounter.onProgressChanged(planName, fromProgress, progress);
+        recordProgress(entityID, progress, System.currentTimeMillis());
+    }
+
+    /**
+     * The plans of the entity are unknown here, every count cached by ProgressCounter is dropped.
+     */
+    public synchronized void record(long entityID, int progress, long updateTime) {
+        ProgressCounter.invalidate();
+        recordProgress(entityID, progress, updateTime);
+    }
+
+    private void recordProgress(long entityID, int progress, long updateTime) {
+        Change change = changeOf(entityID);
+        change.hasProgress = true;
+        change.progress = progress;
+        change.updateTime = updateTime;
+    }
+
+    public synchronized void recordSchedule(long entityID, float ease, int interval, int repetitions, long due) {
+        Change change = changeOf(entityID);
+        change.hasSchedule = true;
+        change.ease = ease;
+        change.interval = interval;
+        change.repetitions = repetitions;
+        change.due = due;
+    }
+
+    private Change changeOf(long entityID) {
+        Change change = pending.get(entityID);
+        if (null == change) {
+            change = new Change();
+            pending.put(entityID, change);
+        }
+        if (!flushScheduled) {
+            flushScheduled = true;
+            executor.schedule(flushRunnable, FLUSH_DELAY, TimeUnit.SECONDS);
+        }
+        return change;
+    }
+
+    /**
+     * Write all pending changes in background.
+     */
+    public void flush() {
+        executor.execute(flushRunnable);
+    }
+
+    /**
+     * Write all pending changes, then call task in the journal thread(no change is written while
+     * it runs), blocks until it returns. Must NOT be called in main thread.
+     *
+     * @param onTaken called with the journal locked once the pending changes are taken for
+     *                writing, every change recorded after it is not in database when task runs
+     * @throws ExecutionException if writing failed(task is not called) or task failed
+     */
+    <T> T flushThen(final Runnable onTaken, final Callable<T> task) throws ExecutionException, InterruptedException {
+        return executor.submit(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                if (!flushNow(onTaken)) {
+                    throw new IllegalStateException("Pending changes were not written");
+                }
+                return task.call();
+            }
+        }).get();
+    }
+
+    /**
+     * Overlay the change not written yet(if any) on an entity just read from database.
+     */
+    synchronized void applyPending(LocalizedEntity entity) {
+        Change change = pending.get(entity.getEntityID());
+        if (null == change || !change.hasProgress) {
+            change = flushing.get(entity.getEntityID());
+        }
+        if (null != change && change.hasProgress) {
+            entity.setProgress(change.progress, false);
+            entity.setUpdateTime(new Date(change.updateTime));
+        }
+    }
+
+    /**
+     * @return the progress recorded but not written yet, fallback if none
+     */
+    synchronized int pendingProgress(long entityID, int fallback) {
+        Change change = pending.get(entityID);
+        if (null == change || !change.hasProgress) {
+            change = flushing.get(entityID);
+        }
+        return null != change && change.hasProgress ? change.progress : fallback;
+    }
+
+    /**
+     * @return the Schedule recorded but not written yet, null if none
+     */
+    synchronized Schedule pendingSchedule(long entityID) {
+        Change change = pending.get(entityID);
+        if (null == change || !change.hasSchedule) {
+            change = flushing.get(entityID);
+        }
+        if (null != change && change.hasSchedule) {
+            return new Schedule(change.ease, change.interval, change.repetitions, change.due);
+        }
+        return null;
+    }
+
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    private final Runnable flushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flushNow(null);
+        }
+    };
+
+    /**
+     * Only called in the journal thread.
+     *
+     * @return false if the changes failed to be written(they are requeued)
+     */
+    private boolean flushNow(Runnable onTaken) {
+        HashMap<Long, Change> changes;
+        synchronized (this) {
+            if (null != onTaken) {
+                onTaken.run();
+            }
+            flushScheduled = false;
+            if (pending.size() == 0) {
+                return true;
+            }
+            changes = pending;
+            flushing = changes;
+            pending = new HashMap<>();
+        }
+        try {
+            write(changes);
+            return true;
+        } catch (Exception e) {
+            e.printStackTrace();
+            requeue(changes);
+            return false;
+        } finally {
+            synchronized (this) {
+                flushing = new HashMap<>();
+            }
+        }
+    }
+
+    private void write(HashMap<Long, Change> changes) {
+        //kept pending while the database is being released(or if it could not be)
+        if (!DatabaseInitializer.awaitInitialized()) {
+            throw new IllegalStateException("Database is not initialized");
+        }
+        SQLiteDatabase db = Connector.getDatabase();
+        SQLiteStatement update = db.compileStatement(SQL_UPDATE);
+        SQLiteStatement schedule = db.compileStatement(SQL_SCHEDULE);
+        db.beginTransaction();
+        try {
+            for (Map.Entry<Long, Change> entry : changes.entrySet()) {
+                Change change = entry.getValue();
+                if (change.hasProgress) {
+                    update.bindLong(1, change.progress);
+                    update.bindLong(2, change.updateTime);
+                    update.bindLong(3, entry.getKey());
+                    update.executeUpdateDelete();
+                }
+                if (change.hasSchedule) {
+                    schedule.bindLong(1, entry.getKey());
+                    schedule.bindDouble(2, change.ease);
+                    schedule.bindLong(3, change.interval);
+                    schedule.bindLong(4, change.repetitions);
+                    schedule.bindLong(5, change.due);
+                    schedule.executeInsert();
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            update.close();
+            schedule.close();
+        }
+    }
+
+    /**
+     * Put back changes that failed to be written, unless newer ones arrived meanwhile.
+     */
+    private synchronized void requeue(HashMap<Long, Change> changes) {
+        for (Map.Entry<Long, Change> entry : changes.entrySet()) {
+            Change failed = entry.getValue();
+            Change newer = pending.get(entry.getKey());
+            if (null == newer) {
+                pending.put(entry.getKey(), failed);
+                continue;
+            }
+            //keep the newer part, take back what has not been changed since
+            if (!newer.hasProgress && failed.hasProgress) {
+                newer.hasProgress = true;
+                newer.progress = failed.progress;
+                newer.updateTime = failed.updateTime;
+            }
+            if (!newer.hasSchedule && failed.hasSchedule) {
+                newer.hasSchedule = true;
+                newer.ease = failed.ease;
+                newer.interval = failed.interval;
+                newer.repetitions = failed.repetitions;
+                newer.due = failed.due;
+            }
+        }
+        if (!flushScheduled) {
+            flushScheduled = true;
+            executor.schedule(flushRunnable, FLUSH_DELAY, TimeUnit.SECONDS);
+        }
+    }
+
+
+    private static class Change {
+        boolean hasProgress;
+        int progress;
+        long updateTime;
+
+        boolean hasSchedule;
+        float ease;
+        int interval;
+        int repetitions;
+        long due;
+    }
+}
@@ -0,0 +1,294 @@
+package info.arybin.fearnotwords.model;
+
+import android.content.Context;
+import android.os.AsyncTask;
+import android.support.v4.util.LongSparseArray;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In process holder of MemorizeSessions, only the session id needs to go through Bundles.
+ * <p>
+ * For process death every session can be saved to a file named by its id(plan, language, entity
+ * ids and the queue snapshot, whose sizes are unbounded and must not go through Bundles),
+ * restore() rebuilds the session from that file. Files left behind(eg. the process was killed
+ * before close()) are swept on initialize().
+ * <p>
+ * Note: NOT THREAD SAFE(ONLY ACCESS IN MAIN THREAD)
+ */
+public class SessionRepository {
+
+    private static final int RESTORE_PAGE_SIZE = 50;
+    private static final int FILE_VERSION = 2;
+    private static final String DIRECTORY = "sessions";
+    private static final String SUFFIX_TEMP = ".tmp";
+    //a session not restored within this is not coming back(eg. its task was cleared)
+    private static final long STALE_AGE = TimeUnit.DAYS.toMillis(7);
+
+    //one thread, so saves of the same session are written in order
+    private static final ExecutorService fileExecutor = Executors.newSingleThreadExecutor();
+    private static File directory;
+
+    //seeded with time so that ids restored after process death will not collide with new ones
+    private static final AtomicLong nextID = new AtomicLong(System.currentTimeMillis());
+    private static final LongSparseArray<MemorizeSession> sessions = new LongSparseArray<>();
+
+    private SessionRepository() {
+    }
+
+    public static MemorizeSession open(String planName, String language) {
+        MemorizeSession session = new MemorizeSession(nextID.getAndIncrement(), planName, language);
+        sessions.put(session.getID(), session);
+        return session;
+    }
+
+    /**
+     * @return null if the session was closed or lost with the process
+     */
+    public static MemorizeSession get(long sessionID) {
+        return sessions.get(sessionID);
+    }
+
+    public static void close(long sessionID) {
+        MemorizeSession session = sessions.get(sessionID);
+        sessions.remove(sessionID);
+        if (null != session) {
+            session.close();
+        }
+        if (null != directory) {
+            final File file = fileOf(sessionID);
+            fileExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    file.delete();
+                }
+            });
+        }
+    }
+
+    /**
+     * Must be called before save() and restore()(eg. in Application#onCreate).
+     */
+    public static void initialize(Context context) {
+        directory = new File(context.getFilesDir(), DIRECTORY);
+        final File sweptDirectory = directory;
+        //before any save(), so no temp file being written is swept
+        fileExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                sweep(sweptDirectory);
+            }
+        });
+    }
+
+    /**
+     * Delete temp files, files not named by a session id and files older than STALE_AGE.
+     */
+    private static void sweep(File directory) {
+        File[] files = directory.listFiles();
+        if (null == files) {
+            return;
+        }
+        long staleBefore = System.currentTimeMillis() - STALE_AGE;
+        for (File file : files) {
+            if (!isSessionFile(file.getName()) || file.lastModified() < staleBefore) {
+                file.delete();
+            }
+        }
+    }
+
+    private static boolean isSessionFile(String name) {
+        try {
+            Long.parseLong(name);
+            return true;
+        } catch (NumberFormatException e) {
+            //temp files and anything unknown
+            return false;
+        }
+    }
+
+    private static File fileOf(long sessionID) {
+        return new File(directory, String.valueOf(sessionID));
+    }
+
+    /**
+     * Write the session to its file in background(eg. in onSaveInstanceState), only a copy of
+     * the ids is taken in the calling thread. The queue snapshot is written as is, it must not be
+     * modified afterwards.
+     */
+    public static void save(MemorizeSession session) {
+        if (null == directory) {
+            return;
+        }
+        final File file = fileOf(session.getID());
+        final String planName = session.getPlanName();
+        final String language = session.getLanguage();
+        final long[] entityIDs = session.getEntityIDs();
+        final byte[] queueSnapshot = session.getQueueSnapshot();
+        fileExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    write(file, planName, language, entityIDs, queueSnapshot);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+    }
+
+    private static void write(File file, String planName, String language,
+                              long[] entityIDs, byte[] queueSnapshot) throws IOException {
+        File parent = file.getParentFile();
+        if (!parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Can not create " + parent);
+        }
+        File tempFile = new File(parent, file.getName() + SUFFIX_TEMP);
+        FileOutputStream fileStream = new FileOutputStream(tempFile);
+        try {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(fileStream));
+            output.writeInt(FILE_VERSION);
+            writeNullableString(output, planName);
+            writeNullableString(output, language);
+            output.writeInt(entityIDs.length);
+            for (long entityID : entityIDs) {
+                output.writeLong(entityID);
+            }
+            output.writeInt(null == queueSnapshot ? -1 : queueSnapshot.length);
+            if (null != queueSnapshot) {
+                output.write(queueSnapshot);
+            }
+            output.flush();
+            fileStream.getFD().sync();
+        } finally {
+            fileStream.close();
+        }
+        if (!tempFile.renameTo(file)) {
+            tempFile.delete();
+            throw new IOException("Can not rename " + tempFile + " to " + file);
+        }
+    }
+
+    private static void writeNullableString(DataOutputStream output, String value) throws IOException {
+        output.writeBoolean(null != value);
+        if (null != value) {
+            output.writeUTF(value);
+        }
+    }
+
+    private static String readNullableString(DataInputStream input) throws IOException {
+        return input.readBoolean() ? input.readUTF() : null;
+    }
+
+    /**
+     * Rebuild a session lost with the process from the file written by save(), the file is read
+     * and the Memorables are loaded in background and appended page by page. Plan and language
+     * are known once the first page is appended.
+     */
+    public static MemorizeSession restore(long sessionID) {
+        MemorizeSession session = sessions.get(sessionID);
+        if (null == session) {
+            session = new MemorizeSession(sessionID, null, null);
+            sessions.put(sessionID, session);
+            if (null != directory) {
+                session.startRestoring();
+                new RestoreTask(session, fileOf(sessionID)).execute();
+            }
+        }
+        return session;
+    }
+
+
+    private static class RestoreTask extends AsyncTask<Void, ArrayList<LocalizedEntity>, Void> {
+        private final MemorizeSession session;
+        private final File file;
+        //read in background, handed to the session in main thread
+        private String planName;
+        private String language;
+        private byte[] queueSnapshot;
+
+        RestoreTask(MemorizeSession session, File file) {
+            this.session = session;
+            this.file = file;
+        }
+
+        private long[] read() {
+            if (!file.exists()) {
+                return new long[0];
+            }
+            try {
+                DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+                try {
+                    if (input.readInt() != FILE_VERSION) {
+                        return new long[0];
+                    }
+                    planName = readNullableString(input);
+                    language = readNullableString(input);
+                    long[] entityIDs = new long[input.readInt()];
+                    for (int i = 0; i < entityIDs.length; i++) {
+                        entityIDs[i] = input.readLong();
+                    }
+                    int snapshotLength = input.readInt();
+                    if (snapshotLength >= 0) {
+                        queueSnapshot = new byte[snapshotLength];
+                        input.readFully(queueSnapshot);
+                    }
+                    return entityIDs;
+                } finally {
+                    input.close();
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+                return new long[0];
+            }
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected Void doInBackground(Void... params) {
+            long[] entityIDs = read();
+            //the database may still be being released or migrated(eg. first start after update)
+            if (!DatabaseInitializer.awaitInitialized()) {
+                return null;
+            }
+            ArrayList<Long> page = new ArrayList<>(RESTORE_PAGE_SIZE);
+            for (long entityID : entityIDs) {
+                page.add(entityID);
+                if (page.size() == RESTORE_PAGE_SIZE) {
+                    publishProgress(LocalizedEntityLoader.load(page, language));
+                    page.clear();
+                }
+            }
+            if (page.size() > 0) {
+                publishProgress(LocalizedEntityLoader.load(page, language));
+            }
+            return null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected void onProgressUpdate(ArrayList<LocalizedEntity>... values) {
+            session.restoreHeader(planName, language);
+            session.append(values[0]);
+        }
+
+        @Override
+        protected void onPostExecute(Void result) {
+            session.restoreHeader(planName, language);
+            session.setQueueSnapshot(queueSnapshot);
+            session.finishRestoring();
+        }
+    }
+}
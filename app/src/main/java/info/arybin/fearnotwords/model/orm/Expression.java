@@ -1,5 +1,6 @@
 package info.arybin.fearnotwords.model.orm;
 
+import org.litepal.annotation.Column;
 import org.litepal.crud.DataSupport;
 
 import java.util.ArrayList;
@@ -11,14 +12,24 @@ import java.util.List;
  * <p>
  * An Expression has many Entities/Translation/Pronounce(in different language)
  * An Expression has many ExpressionLs
+ * <p>
+ * Relations are loaded once on first access and kept until invalidate() is called.
  */
 public class Expression extends DataSupport {
+    private static final int RELATION_ENTITIES = 0x1;
+    private static final int RELATION_TRANSLATIONS = 0x2;
+    private static final int RELATION_PRONOUNCES = 0x4;
+    private static final int RELATION_EXPRESSION_LS = 0x8;
+
     private long id;
     private List<Entity> entities = new ArrayList<>();
     private List<Translation> translations = new ArrayList<>();
     private List<Pronounce> pronounces = new ArrayList<>();
     private List<ExpressionL> expressionLs = new ArrayList<>();
 
+    @Column(ignore = true)
+    private int loadedRelations = 0;
+
 
     public long getId() {
         return id;
@@ -28,6 +39,16 @@ public class Expression extends DataSupport {
         this.id = id;
     }
 
+    /**
+     * Forget the loaded relations, they will be queried again on next access.
+     */
+    public void invalidate() {
+        loadedRelations = 0;
+    }
+
+    private boolean isLoaded(int relation) {
+        return (loadedRelations & relation) != 0;
+    }
 
     public Entity getEntity(String language) {
         for (Entity entity : getEntities()) {
@@ -39,7 +60,10 @@ public class Expression extends DataSupport {
     }
 
     public List<Entity> getEntities() {
-        entities = DataSupport.where("expression_id == ?", String.valueOf(id)).find(Entity.class);
+        if (!isLoaded(RELATION_ENTITIES)) {
+            entities = DataSupport.where("expression_id == ?", String.valueOf(id)).find(Entity.class);
+            loadedRelations |= RELATION_ENTITIES;
+        }
         return entities;
     }
 
@@ -53,7 +77,10 @@ public class Expression extends DataSupport {
     }
 
     public List<Translation> getTranslations() {
-        translations = DataSupport.where("expression_id == ?", String.valueOf(id)).find(Translation.class);
+        if (!isLoaded(RELATION_TRANSLATIONS)) {
+            translations = DataSupport.where("expression_id == ?", String.valueOf(id)).find(Translation.class);
+            loadedRelations |= RELATION_TRANSLATIONS;
+        }
         return translations;
     }
 
@@ -67,12 +94,18 @@ public class Expression extends DataSupport {
     }
 
     public List<Pronounce> getPronounces() {
-        pronounces = DataSupport.where("expression_id == ?", String.valueOf(id)).find(Pronounce.class);
+        if (!isLoaded(RELATION_PRONOUNCES)) {
+            pronounces = DataSupport.where("expression_id == ?", String.valueOf(id)).find(Pronounce.class);
+            loadedRelations |= RELATION_PRONOUNCES;
+        }
         return pronounces;
     }
 
     public List<ExpressionL> getExpressionLs() {
-        expressionLs = DataSupport.where("expression_id == ?", String.valueOf(id)).find(ExpressionL.class);
+        if (!isLoaded(RELATION_EXPRESSION_LS)) {
+            expressionLs = DataSupport.where("expression_id == ?", String.valueOf(id)).find(ExpressionL.class);
+            loadedRelations |= RELATION_EXPRESSION_LS;
+        }
         return expressionLs;
     }
 
@@ -9,6 +9,8 @@ import java.util.List;
 /**
  * The ExpressionL is an abstract concept of EntityL in different language
  * An ExpressionL has many EntityL which is specialized in different language
+ * <p>
+ * EntityLs are loaded once on first access and kept until invalidate() is called.
  */
 public class ExpressionL extends DataSupport {
     private long id;
@@ -17,6 +19,9 @@ public class ExpressionL extends DataSupport {
     private long expression_id;
     private List<EntityL> entityLs = new ArrayList<>();
 
+    @Column(ignore = true)
+    private boolean entityLsLoaded = false;
+
 
     public long getId() {
         return id;
@@ -37,8 +42,18 @@ public class ExpressionL extends DataSupport {
         this.expression = expression;
     }
 
+    /**
+     * Forget the loaded entityLs, they will be queried again on next access.
+     */
+    public void invalidate() {
+        entityLsLoaded = false;
+    }
+
     public List<EntityL> getEntityLs() {
-        entityLs = DataSupport.where("expressionl_id = ?", String.valueOf(id)).find(EntityL.class);
+        if (!entityLsLoaded) {
+            entityLs = DataSupport.where("expressionl_id = ?", String.valueOf(id)).find(EntityL.class);
+            entityLsLoaded = true;
+        }
         return entityLs;
     }
 
@@ -0,0 +1,160 @@
+package info.arybin.fearnotwords.ui;
+
+import android.content.Context;
+import android.media.AudioAttributes;
+import android.media.SoundPool;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.SparseBooleanArray;
+
+import info.arybin.fearnotwords.Constants;
+import info.arybin.fearnotwords.R;
+
+import static android.media.AudioManager.STREAM_MUSIC;
+
+/**
+ * Short sound effects listed in a fixed manifest(name -> raw resource), loaded in a background
+ * thread and decoded by SoundPool, readiness is reported per sound through
+ * SoundPool.OnLoadCompleteListener.
+ * <p>
+ * A sound played before it is ready is queued(one per sound) and played once it is decoded,
+ * unless LATENCY_BUDGET_MS has passed by then(a late feedback sound is worse than none).
+ * <p>
+ * Note: NOT THREAD SAFE(ONLY ACCESS IN MAIN THREAD)
+ */
+public class SoundBank implements SoundPool.OnLoadCompleteListener, Constants {
+
+    private static final String[] NAMES = {SOUND_PASS, SOUND_SKIP, SOUND_TICK};
+    private static final int[] RESOURCES = {R.raw.sound_pass, R.raw.sound_skip, R.raw.sound_ticktock};
+
+    public static final long LATENCY_BUDGET_MS = 150;
+
+    private static final int MAX_STREAMS = 10;
+    private static final long NOT_PENDING = -1;
+
+    private final Context context;
+    private final SoundPool soundPool;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    //sample ids by manifest index, 0 until SoundPool#load returned
+    private final int[] sampleIDs = new int[NAMES.length];
+    //uptime the queued play was requested at, by manifest index
+    private final long[] pendingSince = new long[NAMES.length];
+    //sample id -> decoded successfully
+    private final SparseBooleanArray loadedSamples = new SparseBooleanArray(NAMES.length);
+    private volatile boolean released = false;
+
+    public SoundBank(Context context) {
+        this.context = context.getApplicationContext();
+        soundPool = new SoundPool.Builder()
+                .setMaxStreams(MAX_STREAMS)
+                .setAudioAttributes(new AudioAttributes.Builder().setLegacyStreamType(STREAM_MUSIC).build())
+                .build();
+        //created in main thread, so completions are delivered in main thread
+        soundPool.setOnLoadCompleteListener(this);
+        for (int i = 0; i < pendingSince.length; i++) {
+            pendingSince[i] = NOT_PENDING;
+        }
+    }
+
+    /**
+     * Start loading every sound of the manifest, returns immediately.
+     */
+    public void load() {
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < RESOURCES.length && !released; i++) {
+                    final int index = i;
+                    final int sampleID = soundPool.load(context, RESOURCES[i], 1);
+                    handler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            onRegistered(index, sampleID);
+                        }
+                    });
+                }
+            }
+        }, "SoundBank").start();
+    }
+
+    private void onRegistered(int index, int sampleID) {
+        sampleIDs[index] = sampleID;
+        //the completion may have been delivered before the id was known
+        if (loadedSamples.get(sampleID)) {
+            playPending(index);
+        }
+    }
+
+    @Override
+    public void onLoadComplete(SoundPool soundPool, int sampleId, int status) {
+        loadedSamples.put(sampleId, 0 == status);
+        int index = indexOfSample(sampleId);
+        if (index >= 0) {
+            if (0 == status) {
+                playPending(index);
+            } else {
+                //never going to be ready
+                pendingSince[index] = NOT_PENDING;
+            }
+        }
+    }
+
+    private void playPending(int index) {
+        long since = pendingSince[index];
+        pendingSince[index] = NOT_PENDING;
+        if (since != NOT_PENDING && SystemClock.uptimeMillis() - since <= LATENCY_BUDGET_MS) {
+            playSample(sampleIDs[index]);
+        }
+    }
+
+    private boolean playSample(int sampleID) {
+        return !released && 0 != soundPool.play(sampleID, 1, 1, 1, 0, 1);
+    }
+
+    /**
+     * @return true if played or queued, false if unknown or failed to load
+     */
+    public boolean play(String name) {
+        int index = indexOf(name);
+        if (index < 0 || released) {
+            return false;
+        }
+        int sampleID = sampleIDs[index];
+        if (0 != sampleID && loadedSamples.indexOfKey(sampleID) >= 0) {
+            return loadedSamples.get(sampleID) && playSample(sampleID);
+        }
+        pendingSince[index] = SystemClock.uptimeMillis();
+        return true;
+    }
+
+    public boolean isReady(String name) {
+        int index = indexOf(name);
+        return index >= 0 && 0 != sampleIDs[index] && loadedSamples.get(sampleIDs[index]);
+    }
+
+    public void release() {
+        released = true;
+        handler.removeCallbacksAndMessages(null);
+        soundPool.release();
+    }
+
+    private static int indexOf(String name) {
+        for (int i = 0; i < NAMES.length; i++) {
+            if (NAMES[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int indexOfSample(int sampleID) {
+        for (int i = 0; i < sampleIDs.length; i++) {
+            if (sampleIDs[i] == sampleID) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
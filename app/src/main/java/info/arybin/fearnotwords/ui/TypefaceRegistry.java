@@ -0,0 +1,103 @@
+package info.arybin.fearnotwords.ui;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.res.AssetManager;
+import android.graphics.Typeface;
+import android.widget.TextView;
+
+import java.util.EnumMap;
+
+import info.arybin.fearnotwords.Config;
+
+/**
+ * Process wide Typefaces keyed by their Config font entry, each font is parsed from assets once
+ * and the same instance is handed to every TextView.
+ * <p>
+ * warmUp() parses all fonts in a background thread while the first activity is being created,
+ * get() parses in the calling thread only when the font is not ready yet. Every font has its own
+ * lock: a font is never parsed twice(the caller waits for the warm up of THAT font instead), but
+ * is never held up by the parse of another one.
+ */
+public class TypefaceRegistry {
+
+    private static final Config[] FONTS = {Config.FONT_ASCII, Config.FONT_NON_ASCII, Config.FONT_PHONETIC};
+    private static final String FONT_DIRECTORY = "fonts/";
+
+    private static class Slot {
+        //tried already, a missing asset is not retried for every TextView
+        boolean loaded = false;
+        Typeface typeface;
+    }
+
+    //filled once here and only read afterwards, each Slot is guarded by itself
+    private static final EnumMap<Config, Slot> slots = new EnumMap<>(Config.class);
+
+    static {
+        for (Config font : FONTS) {
+            slots.put(font, new Slot());
+        }
+    }
+
+    private TypefaceRegistry() {
+    }
+
+    public static void warmUp(Context context) {
+        final Context appContext = context.getApplicationContext();
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (Config font : FONTS) {
+                    get(appContext, font);
+                }
+            }
+        }, "TypefaceRegistry").start();
+    }
+
+    /**
+     * @param font one of the FONT_* entries
+     * @return null if the font asset can not be loaded(or font is not a FONT_* entry)
+     */
+    public static Typeface get(Context context, Config font) {
+        Slot slot = slots.get(font);
+        if (null == slot) {
+            return null;
+        }
+        synchronized (slot) {
+            if (!slot.loaded) {
+                slot.loaded = true;
+                slot.typeface = load(context.getAssets(), fontNameOf(context, font));
+            }
+            return slot.typeface;
+        }
+    }
+
+    /**
+     * Called by the custom TextViews in their constructors, skipped in layout preview.
+     */
+    public static void apply(TextView textView, Config font) {
+        if (textView.isInEditMode()) {
+            return;
+        }
+        Typeface typeface = get(textView.getContext(), font);
+        if (null != typeface) {
+            textView.setTypeface(typeface);
+        }
+    }
+
+    private static String fontNameOf(Context context, Config font) {
+        //same preferences as BaseActivity#readConfig
+        SharedPreferences configs = context.getSharedPreferences(context.getPackageName(), Context.MODE_PRIVATE);
+        return configs.getString(font.name(), font.getDefaultValue());
+    }
+
+    private static Typeface load(AssetManager assetManager, String fontName) {
+        try {
+            return Typeface.createFromAsset(assetManager, FONT_DIRECTORY + fontName);
+        } catch (RuntimeException e) {
+            //eg. the font is not shipped in assets
+            e.printStackTrace();
+            return null;
+        }
+    }
+}
@@ -11,7 +11,6 @@ import android.widget.RelativeLayout;
 import android.widget.Scroller;
 
 import static java.lang.Math.abs;
-import static java.lang.Math.pow;
 import static java.lang.Math.sqrt;
 
 public class ElasticLayout extends RelativeLayout {
@@ -20,6 +19,9 @@ public class ElasticLayout extends RelativeLayout {
         Up, Down, Left, Right
     }
 
+    //values() clones its array on every call
+    private static final Direction[] DIRECTIONS = Direction.values();
+
     private final int touchSlop;
 
     public final int STATE_IDLE = 0;
@@ -42,6 +44,9 @@ public class ElasticLayout extends RelativeLayout {
 
     private float previousX;
     private float previousY;
+    //results of adjustToSlidableBound()
+    private float adjustedX;
+    private float adjustedY;
 
     public ElasticLayout(Context context) {
         this(context, null, 0);
@@ -138,7 +143,7 @@ public class ElasticLayout extends RelativeLayout {
         int scrolledX = getScrollX();
         int scrolledY = getScrollY();
         scroller.startScroll(scrolledX, scrolledY, -scrolledX, -scrolledY,
-                (int) (sqrt(pow(scrolledX, 2) + pow(scrolledY, 2)) * 1000 / speed));
+                (int) (sqrt((double) scrolledX * scrolledX + (double) scrolledY * scrolledY) * 1000 / speed));
         invalidate();
     }
 
@@ -201,7 +206,10 @@ public class ElasticLayout extends RelativeLayout {
         return shouldIntercept;
     }
 
-    private Float[] adjustToSlidableBound(float x, float y) {
+    /**
+     * Result is stored in adjustedX/adjustedY(no allocation per MOVE event).
+     */
+    private void adjustToSlidableBound(float x, float y) {
         if (x < slidableBound.left) {
             x = slidableBound.left;
         }
@@ -214,7 +222,8 @@ public class ElasticLayout extends RelativeLayout {
         if (y > slidableBound.bottom) {
             y = slidableBound.bottom;
         }
-        return new Float[]{x, y};
+        adjustedX = x;
+        adjustedY = y;
     }
 
     private boolean notifyIfSlideTo(Direction direction) {
@@ -374,15 +383,15 @@ public class ElasticLayout extends RelativeLayout {
                     float newScrollY = deltaY + oldScrollY;
 
                     boolean notified = false;
-                    for (Direction direction : Direction.values()) {
+                    for (Direction direction : DIRECTIONS) {
                         notified = notifyIfSlideTo(direction);
                         if (notified) {
                             break;
                         }
                     }
                     if (!notified) {
-                        Float[] adjustedPoint = adjustToSlidableBound(newScrollX, newScrollY);
-                        scrollTo((int) -adjustedPoint[0], (int) -adjustedPoint[1]);
+                        adjustToSlidableBound(newScrollX, newScrollY);
+                        scrollTo((int) -adjustedX, (int) -adjustedY);
                     }
 
 
@@ -429,7 +438,7 @@ public class ElasticLayout extends RelativeLayout {
             }
         }
 
-        for (Direction direction : Direction.values()) {
+        for (Direction direction : DIRECTIONS) {
             notifyIfSlideTo(direction);
         }
 
@@ -0,0 +1,123 @@
+package info.arybin.fearnotwords.ui.view.layout;
+
+import android.view.View;
+
+import java.util.List;
+
+/**
+ * Screen rects of a list of views cached in a uniform grid over their container, every cell
+ * keeps a bitmask of the views overlapping it. A hit test only checks the views of one cell,
+ * without getLocationOnScreen() or any allocation.
+ * <p>
+ * The rects are only as fresh as the last update()(eg. call it after every layout pass).
+ * <p>
+ * Note: NOT THREAD SAFE
+ */
+class HitGrid {
+
+    private static final int GRID_SIZE = 8;
+    private static final int CELL_COUNT = GRID_SIZE * GRID_SIZE;
+
+    private int count = 0;
+    //longs per cell, 64 views per long
+    private int words = 0;
+    private int[] lefts = new int[0];
+    private int[] tops = new int[0];
+    private int[] rights = new int[0];
+    private int[] bottoms = new int[0];
+    private long[] cells = new long[0];
+
+    private int originX;
+    private int originY;
+    private int cellWidth = 1;
+    private int cellHeight = 1;
+
+    /**
+     * @param scratch int[2] reused for getLocationOnScreen()
+     */
+    void update(List<View> views, View container, int[] scratch) {
+        container.getLocationOnScreen(scratch);
+        originX = scratch[0];
+        originY = scratch[1];
+        cellWidth = Math.max(1, (container.getWidth() + GRID_SIZE - 1) / GRID_SIZE);
+        cellHeight = Math.max(1, (container.getHeight() + GRID_SIZE - 1) / GRID_SIZE);
+
+        count = views.size();
+        words = (count + 63) >>> 6;
+        if (lefts.length < count) {
+            lefts = new int[count];
+            tops = new int[count];
+            rights = new int[count];
+            bottoms = new int[count];
+        }
+        if (cells.length < CELL_COUNT * words) {
+            cells = new long[CELL_COUNT * words];
+        } else {
+            for (int i = 0; i < CELL_COUNT * words; i++) {
+                cells[i] = 0;
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            View view = views.get(i);
+            view.getLocationOnScreen(scratch);
+            lefts[i] = scratch[0];
+            tops[i] = scratch[1];
+            rights[i] = scratch[0] + view.getWidth();
+            bottoms[i] = scratch[1] + view.getHeight();
+            int word = i >>> 6;
+            long bit = 1L << i;
+            //views reaching out of the container are clamped into the border cells
+            int lastColumn = columnOf(rights[i]);
+            int lastRow = rowOf(bottoms[i]);
+            for (int row = rowOf(tops[i]); row <= lastRow; row++) {
+                for (int column = columnOf(lefts[i]); column <= lastColumn; column++) {
+                    cells[(row * GRID_SIZE + column) * words + word] |= bit;
+                }
+            }
+        }
+    }
+
+    private int columnOf(float x) {
+        return clamp((int) Math.floor((x - originX) / cellWidth));
+    }
+
+    private int rowOf(float y) {
+        return clamp((int) Math.floor((y - originY) / cellHeight));
+    }
+
+    private static int clamp(int index) {
+        return index < 0 ? 0 : index >= GRID_SIZE ? GRID_SIZE - 1 : index;
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    int getWords() {
+        return words;
+    }
+
+    /**
+     * @return the cell a screen point falls in(points out of the container map to the border)
+     */
+    int cellOf(float x, float y) {
+        return rowOf(y) * GRID_SIZE + columnOf(x);
+    }
+
+    /**
+     * @return bit i is set if view (word * 64 + i) may contain points of the cell
+     */
+    long maskAt(int cell, int word) {
+        return cells[cell * words + word];
+    }
+
+    /**
+     * Same bounds as Utils#isPointInsideView.
+     */
+    boolean contains(int index, float x, float y) {
+        return index < count
+                && x > lefts[index] && x < rights[index]
+                && y > tops[index] && y < bottoms[index];
+    }
+}
@@ -9,12 +9,13 @@ import android.widget.RelativeLayout;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Iterator;
-import java.util.Stack;
-
-import static info.arybin.fearnotwords.Utils.isPointInsideView;
 
 /**
+ * Observer screen rects are cached in HitGrids, refreshed after every layout pass, on every
+ * ACTION_DOWN and whenever observers change, so MOVE events are hit tested without
+ * getLocationOnScreen() or allocation. Only while a hover observer is translated(eg. animated,
+ * which moves it without a layout pass) they are refreshed on every MOVE as well.
+ * <p>
  * Note: NOT THREAD SAFE(DO NOT CHANGE OBSERVERS IN OTHER THREAD)
  */
 public class ObservableLayout extends RelativeLayout {
@@ -32,9 +33,20 @@ public class ObservableLayout extends RelativeLayout {
     private ArrayList<View> onPressObservers = new ArrayList<>();
     private ArrayList<View> onHoverObservers = new ArrayList<>();
     private View currentPressedView;
-    private Stack<View> currentHoveredStack = new Stack<>();
     private int state = STATE_IDLE;
 
+    private final HitGrid pressGrid = new HitGrid();
+    private final HitGrid hoverGrid = new HitGrid();
+    private final int[] locationScratch = new int[2];
+    private boolean boundsDirty = true;
+    //whether a hover observer was translated when bounds were refreshed last
+    private boolean hoverTranslated = false;
+
+    //indexes of hovered onHoverObservers, as a set(bits) and in hover order(stack)
+    private long[] hoveredBits = new long[1];
+    private int[] hoveredStack = new int[0];
+    private int hoveredCount = 0;
+
 
     public ObservableLayout(Context context) {
         this(context, null);
@@ -50,47 +62,144 @@ public class ObservableLayout extends RelativeLayout {
     }
 
 
-    private boolean anyPressObserversIn(MotionEvent event) {
-        for (View observer : onPressObservers) {
-            if (isPointInsideView(event.getRawX(), event.getRawY(), observer)) {
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        super.onLayout(changed, l, t, r, b);
+        boundsDirty = true;
+    }
+
+    private void ensureBounds() {
+        if (boundsDirty) {
+            boundsDirty = false;
+            pressGrid.update(onPressObservers, this, locationScratch);
+            hoverGrid.update(onHoverObservers, this, locationScratch);
+            ensureHoveredCapacity(onHoverObservers.size());
+            hoverTranslated = isAnyTranslated(onHoverObservers);
+        }
+    }
+
+    private static boolean isAnyTranslated(ArrayList<View> views) {
+        for (int i = 0; i < views.size(); i++) {
+            View view = views.get(i);
+            if (view.getTranslationX() != 0 || view.getTranslationY() != 0) {
                 return true;
             }
         }
         return false;
     }
 
+    /**
+     * Called on MOVE, refresh once more after a translation went back to 0.
+     */
+    private void invalidateBoundsIfTranslated() {
+        if (hoverTranslated || isAnyTranslated(onHoverObservers)) {
+            boundsDirty = true;
+        }
+    }
+
+    private void ensureHoveredCapacity(int size) {
+        if (hoveredStack.length < size) {
+            hoveredStack = Arrays.copyOf(hoveredStack, size);
+        }
+        int words = (size + 63) >>> 6;
+        if (hoveredBits.length < words) {
+            hoveredBits = Arrays.copyOf(hoveredBits, words);
+        }
+    }
+
+    private boolean isHovered(int index) {
+        return (hoveredBits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private void setHovered(int index, boolean hovered) {
+        if (hovered) {
+            hoveredBits[index >>> 6] |= 1L << index;
+        } else {
+            hoveredBits[index >>> 6] &= ~(1L << index);
+        }
+    }
+
+    private void clearHovered() {
+        for (int i = 0; i < hoveredCount; i++) {
+            setHovered(hoveredStack[i], false);
+        }
+        hoveredCount = 0;
+    }
+
+    private boolean anyPressObserversIn(MotionEvent event) {
+        ensureBounds();
+        float x = event.getRawX();
+        float y = event.getRawY();
+        int cell = pressGrid.cellOf(x, y);
+        for (int word = 0; word < pressGrid.getWords(); word++) {
+            long mask = pressGrid.maskAt(cell, word);
+            while (mask != 0) {
+                int index = (word << 6) + Long.numberOfTrailingZeros(mask);
+                mask &= mask - 1;
+                if (pressGrid.contains(index, x, y)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
 
     private void notifyOnPress(MotionEvent event) {
-        for (View observer : onPressObservers) {
-            if (isPointInsideView(event.getRawX(), event.getRawY(), observer)) {
-                switchToStatePressed(observer);
-                listener.onPressDown(observer, event);
+        ensureBounds();
+        float x = event.getRawX();
+        float y = event.getRawY();
+        int cell = pressGrid.cellOf(x, y);
+        for (int word = 0; word < pressGrid.getWords(); word++) {
+            long mask = pressGrid.maskAt(cell, word);
+            while (mask != 0) {
+                int index = (word << 6) + Long.numberOfTrailingZeros(mask);
+                mask &= mask - 1;
+                if (pressGrid.contains(index, x, y)) {
+                    View observer = onPressObservers.get(index);
+                    switchToStatePressed(observer);
+                    listener.onPressDown(observer, event);
+                }
             }
         }
     }
 
     private void notifyHoverIn(MotionEvent event) {
-        for (View observer : onHoverObservers) {
-            if (isPointInsideView(event.getRawX(), event.getRawY(), observer)) {
-                if (!currentHoveredStack.contains(observer)) {
-                    currentHoveredStack.push(observer);
-                    this.listener.onHoverIn(currentPressedView, observer, event);
+        ensureBounds();
+        float x = event.getRawX();
+        float y = event.getRawY();
+        int cell = hoverGrid.cellOf(x, y);
+        for (int word = 0; word < hoverGrid.getWords(); word++) {
+            long mask = hoverGrid.maskAt(cell, word);
+            while (mask != 0) {
+                int index = (word << 6) + Long.numberOfTrailingZeros(mask);
+                mask &= mask - 1;
+                if (hoverGrid.contains(index, x, y) && !isHovered(index)) {
+                    setHovered(index, true);
+                    hoveredStack[hoveredCount++] = index;
+                    this.listener.onHoverIn(currentPressedView, onHoverObservers.get(index), event);
                 }
             }
         }
     }
 
     private void notifyHoverOut(MotionEvent event) {
-        Iterator<View> iterator = currentHoveredStack.iterator();
-        View hoveredView;
-        while (iterator.hasNext()) {
-            hoveredView = iterator.next();
-            if (!isPointInsideView(event.getRawX(), event.getRawY(), hoveredView)) {
-                iterator.remove();
-                this.listener.onHoverOut(currentPressedView, hoveredView, event);
+        ensureBounds();
+        float x = event.getRawX();
+        float y = event.getRawY();
+        //compact the stack in place, keeping the hover order
+        int kept = 0;
+        int count = hoveredCount;
+        for (int i = 0; i < count; i++) {
+            int index = hoveredStack[i];
+            if (hoverGrid.contains(index, x, y)) {
+                hoveredStack[kept++] = index;
+            } else {
+                setHovered(index, false);
+                this.listener.onHoverOut(currentPressedView, onHoverObservers.get(index), event);
             }
         }
-
+        hoveredCount = kept;
     }
 
 
@@ -118,10 +227,12 @@ public class ObservableLayout extends RelativeLayout {
 
     public void addOnPressObserver(View... views) {
         this.onPressObservers.addAll(Arrays.asList(views));
+        boundsDirty = true;
     }
 
     public void removeOnPressObserver(View view) {
         this.onPressObservers.remove(view);
+        boundsDirty = true;
     }
 
     public ArrayList<View> getOnPressObservers() {
@@ -130,10 +241,14 @@ public class ObservableLayout extends RelativeLayout {
 
     public void addOnHoverObserver(View... views) {
         this.onHoverObservers.addAll(Arrays.asList(views));
+        boundsDirty = true;
     }
 
     public void removeOnHoverObserver(View view) {
+        //indexes of the hovered views shift, forget them
+        clearHovered();
         this.onHoverObservers.remove(view);
+        boundsDirty = true;
     }
 
     public ArrayList<View> getOnHoverObservers() {
@@ -151,6 +266,8 @@ public class ObservableLayout extends RelativeLayout {
             switch (event.getAction()) {
                 case MotionEvent.ACTION_DOWN:
                     if (STATE_IDLE == state) {
+                        //observers may have moved since the last layout(eg. animations)
+                        boundsDirty = true;
                         if (anyPressObserversIn(event)) {
                             notifyOnPress(event);
                         } else {
@@ -162,6 +279,7 @@ public class ObservableLayout extends RelativeLayout {
                     break;
                 case MotionEvent.ACTION_MOVE:
                     if (STATE_PRESSED == state) {
+                        invalidateBoundsIfTranslated();
                         notifyHoverIn(event);
                         notifyHoverOut(event);
                         listener.onPressMove(currentPressedView, event);
@@ -189,6 +307,7 @@ public class ObservableLayout extends RelativeLayout {
 
                 case MotionEvent.ACTION_MOVE:
                     if (STATE_PRESSED == state) {
+                        invalidateBoundsIfTranslated();
                         notifyHoverIn(event);
                         notifyHoverOut(event);
                         listener.onPressMove(currentPressedView, event);
@@ -197,11 +316,11 @@ public class ObservableLayout extends RelativeLayout {
 
                 case MotionEvent.ACTION_UP:
                     if (STATE_PRESSED == state) {
-                        View hoveredView;
-                        while (currentHoveredStack.size() > 0) {
-                            hoveredView = currentHoveredStack.pop();
-                            if (null == hoveredView || !listener.onHoverCancel(currentPressedView, hoveredView, event)) {
-                                currentHoveredStack.clear();
+                        while (hoveredCount > 0) {
+                            int index = hoveredStack[--hoveredCount];
+                            setHovered(index, false);
+                            if (!listener.onHoverCancel(currentPressedView, onHoverObservers.get(index), event)) {
+                                clearHovered();
                                 break;
                             }
                         }
@@ -4,18 +4,23 @@ import android.content.Context;
 import android.support.annotation.Nullable;
 import android.util.AttributeSet;
 
+import info.arybin.fearnotwords.Config;
+import info.arybin.fearnotwords.ui.TypefaceRegistry;
 import me.grantland.widget.AutofitTextView;
 
 public class TextViewNonAscii extends AutofitTextView {
     public TextViewNonAscii(Context context) {
         super(context);
+        TypefaceRegistry.apply(this, Config.FONT_NON_ASCII);
     }
 
     public TextViewNonAscii(Context context, @Nullable AttributeSet attrs) {
         super(context, attrs);
+        TypefaceRegistry.apply(this, Config.FONT_NON_ASCII);
     }
 
     public TextViewNonAscii(Context context, @Nullable AttributeSet attrs, int defStyleAttr) {
         super(context, attrs, defStyleAttr);
+        TypefaceRegistry.apply(this, Config.FONT_NON_ASCII);
     }
 }
@@ -3,18 +3,23 @@ package info.arybin.fearnotwords.ui.view.textview;
 import android.content.Context;
 import android.util.AttributeSet;
 
+import info.arybin.fearnotwords.Config;
+import info.arybin.fearnotwords.ui.TypefaceRegistry;
 import me.grantland.widget.AutofitTextView;
 
 public class TextViewPhonetic extends AutofitTextView {
     public TextViewPhonetic(Context context) {
         super(context);
+        TypefaceRegistry.apply(this, Config.FONT_PHONETIC);
     }
 
     public TextViewPhonetic(Context context, AttributeSet attrs) {
         super(context, attrs);
+        TypefaceRegistry.apply(this, Config.FONT_PHONETIC);
     }
 
     public TextViewPhonetic(Context context, AttributeSet attrs, int defStyle) {
         super(context, attrs, defStyle);
+        TypefaceRegistry.apply(this, Config.FONT_PHONETIC);
     }
 }
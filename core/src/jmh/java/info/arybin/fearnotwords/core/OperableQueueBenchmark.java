@@ -0,0 +1,153 @@
+package info.arybin.fearnotwords.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import info.arybin.fearnotwords.model.Memorable;
+
+/**
+ * Throughput(and with the gc profiler, allocation rate) of the review loop.
+ * <p>
+ * Every benchmark method is ONE user action. The queue is built per iteration, when it runs dry
+ * within one the source is appended again(same as a session appending a page, no copy), which
+ * happens once every size actions.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class OperableQueueBenchmark {
+
+    private static final int PATTERN_SIZE = 1024;
+
+    @Param({"simple", "concurrent"})
+    public String kind;
+
+    @Param({"100", "10000", "1000000"})
+    public int size;
+
+    /**
+     * Percentage of actions that are skip() instead of pass().
+     */
+    @Param({"10", "30", "50"})
+    public int skipPercent;
+
+    private List<Memorable> source;
+    private OperableQueue<Memorable> queue;
+    //precomputed so Random is not measured
+    private boolean[] skipPattern;
+    private int step = 0;
+
+    @Setup(Level.Trial)
+    public void createSource() {
+        source = SyntheticMemorable.create(size, 42);
+        Random random = new Random(7);
+        skipPattern = new boolean[PATTERN_SIZE];
+        for (int i = 0; i < PATTERN_SIZE; i++) {
+            skipPattern[i] = random.nextInt(100) < skipPercent;
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void buildQueue() {
+        if ("concurrent".equals(kind)) {
+            queue = ConcurrentOperableQueue.buildFrom(source);
+        } else {
+            queue = SimpleOperableQueue.buildFrom(source);
+        }
+        //make sure there is something to loop through
+        queue.skip();
+        queue.skip();
+    }
+
+    private void refillIfDry() {
+        if (null == queue.current()) {
+            //keep the passed deque from growing across refills
+            queue.getRawDeque(OperableQueue.DataSource.Passed).clear();
+            queue.append(source);
+        }
+    }
+
+    @Benchmark
+    public Memorable passOrSkip() {
+        refillIfDry();
+        boolean skip = skipPattern[step++ & (PATTERN_SIZE - 1)];
+        return skip ? queue.skip() : queue.pass();
+    }
+
+    @Benchmark
+    public Memorable loopThroughSkipped() {
+        refillIfDry();
+        if (queue.getRawDeque(OperableQueue.DataSource.Skipped).isEmpty()) {
+            return queue.skip();
+        }
+        queue.startLoop(OperableQueue.DataSource.Skipped);
+        queue.loop();
+        queue.loop();
+        return queue.endLoop();
+    }
+
+    /**
+     * ConcurrentOperableQueue answered in one thread while loader threads append pages, shows
+     * what contention on the lock free tails costs the consumer.
+     */
+    @State(Scope.Group)
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public static class ConcurrentProducers {
+
+        private static final int PAGE_SIZE = 20;
+        //producers back off above this, so the queue does not grow without bound
+        private static final int MAX_BACKLOG = 10000;
+
+        private List<Memorable> page;
+        private ConcurrentOperableQueue<Memorable> queue;
+        //consumer only
+        private int passes = 0;
+
+        @Setup(Level.Iteration)
+        public void buildQueue() {
+            page = SyntheticMemorable.create(PAGE_SIZE, 42);
+            queue = ConcurrentOperableQueue.buildFrom(SyntheticMemorable.create(MAX_BACKLOG, 7));
+            passes = 0;
+        }
+
+        @Benchmark
+        @Group("appendWhileAnswering")
+        @GroupThreads(1)
+        public Memorable answer() {
+            if (null == queue.current()) {
+                //producers fell behind
+                return null;
+            }
+            if (++passes % MAX_BACKLOG == 0) {
+                //keep the passed deque from growing
+                queue.getRawDeque(OperableQueue.DataSource.Passed).clear();
+            }
+            return queue.pass();
+        }
+
+        @Benchmark
+        @Group("appendWhileAnswering")
+        @GroupThreads(3)
+        public int appendPage() {
+            int backlog = queue.size(OperableQueue.DataSource.Default);
+            if (backlog < MAX_BACKLOG) {
+                queue.append(page);
+            }
+            return backlog;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package info.arybin.fearnotwords.core;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import info.arybin.fearnotwords.model.Memorable;
+import info.arybin.fearnotwords.model.Translatable;
+
+/**
+ * Just like FakeEntity(without Parcelable), for benchmarks.
+ */
+public class SyntheticMemorable implements Memorable {
+
+    private final long entityID;
+    private final String body;
+    private final String pronounce;
+    private final String translation;
+    private final String[] examples;
+    private final String[] exampleTranslations;
+    private int progress;
+
+    SyntheticMemorable(long entityID, Random random) {
+        this.entityID = entityID;
+        body = "admire" + entityID;
+        pronounce = random.nextInt(20) > 0 ? "[əd'maɪə]" : null;
+        translation = entityID + "\nvt. 钦佩；赞美\nvi. 钦佩；称赞；爱慕";
+        int exampleCount = 1 + random.nextInt(3);
+        examples = new String[exampleCount];
+        exampleTranslations = new String[exampleCount];
+        for (int i = 0; i < exampleCount; i++) {
+            examples[i] = "We stopped halfway to admire the view-" + entityID + "-" + i;
+            exampleTranslations[i] = "我们中途停下来观赏风景-" + entityID + "-" + i;
+        }
+    }
+
+    static ArrayList<Memorable> create(int count, long seed) {
+        Random random = new Random(seed);
+        ArrayList<Memorable> result = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            result.add(new SyntheticMemorable(i, random));
+        }
+        return result;
+    }
+
+    @Override
+    public long getEntityID() {
+        return entityID;
+    }
+
+    @Override
+    public void setMemoryProgress(int progress) {
+        this.progress = progress;
+    }
+
+    @Override
+    public int getMemoryProgress() {
+        return progress;
+    }
+
+    @Override
+    public CharSequence getOriginal() {
+        return body;
+    }
+
+    @Override
+    public CharSequence getTranslation() {
+        return translation;
+    }
+
+    @Override
+    public CharSequence getPronounce() {
+        return pronounce;
+    }
+
+    @Override
+    public Translatable getExampleAt(final int index) {
+        return new Translatable() {
+            @Override
+            public CharSequence getOriginal() {
+                return examples[index];
+            }
+
+            @Override
+            public CharSequence getTranslation() {
+                return exampleTranslations[index];
+            }
+        };
+    }
+
+    @Override
+    public int getExampleCount() {
+        return examples.length;
+    }
+
+    @Override
+    public String toString() {
+        return body;
+    }
+}
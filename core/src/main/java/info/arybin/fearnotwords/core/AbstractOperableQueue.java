@@ -0,0 +1,433 @@
+package info.arybin.fearnotwords.core;
+
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+abstract class AbstractOperableQueue<T> implements OperableQueue<T> {
+
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final int FLAG_CURRENT = 0x1;
+    private static final int FLAG_IN_LOOP = 0x2;
+    private static final int FLAG_BEFORE_LOOP = 0x4;
+    private static final int FLAG_HISTORY = 0x8;
+    private static final int NO_DEQUE = ActionHistory.NO_DEQUE;
+
+
+    private AtomicBoolean inLoop = new AtomicBoolean(false);
+    //private DataSource loopSource;
+    private IndexedDeque<T> loopDeque;
+    //private DataSource lastSource = DataSource.Default;
+    private IndexedDeque<T> lastDeque;
+    private IndexedDeque<T> dequeBeforeLoop;
+
+    private IndexedDeque<T> skippedQueue;
+    private IndexedDeque<T> passedQueue;
+    private IndexedDeque<T> defaultQueue;
+
+    private int intervalToLastReview = 0;
+    private T current;
+    private T beforeLoop;
+
+    private ActionHistory history;
+    private IdMapper<T> historyMapper;
+    //restored before enableHistory() was called, taken over by it
+    private ActionHistory restoredHistory;
+
+    protected abstract boolean shouldReview(int intervalToLastReview);
+
+    AbstractOperableQueue(Collection<? extends T> source, Collection<? extends T> skipped) {
+        defaultQueue = new IndexedDeque<>(source);
+        skippedQueue = new IndexedDeque<>(skipped);
+        passedQueue = new IndexedDeque<>();
+        lastDeque = defaultQueue;
+        current = defaultQueue.poll();
+    }
+
+
+    private void currentTo(IndexedDeque<T> queue) {
+        if (current != null) {
+            if (queue == defaultQueue) {
+                //only use in loop
+                defaultQueue.addFirst(current);
+            } else {
+                queue.add(current);
+            }
+        }
+
+    }
+
+    private T nextFrom(IndexedDeque<T> queue) {
+        current = queue.poll();
+        lastDeque=queue;
+        return current;
+    }
+
+    private T next() {
+        if (inLoop.get()) {
+            return nextFrom(loopDeque);
+        } else {
+            if (defaultQueue.size() == 0 && skippedQueue.size() == 0) {
+                //end of queue
+                current = null;
+                return null;
+            }
+            if (defaultQueue.size() == 0) {
+                return nextFrom(skippedQueue);
+            }
+            if (skippedQueue.size() == 0) {
+                return nextFrom(defaultQueue);
+            }
+            if (shouldReview(intervalToLastReview++)) {
+                intervalToLastReview = 0;
+                return nextFrom(skippedQueue);
+            } else {
+                return nextFrom(defaultQueue);
+            }
+        }
+    }
+
+
+    @Override
+    public IndexedDeque<T> getRawDeque(DataSource dataSource){
+        switch (dataSource) {
+            case Passed:
+                return passedQueue;
+            case Skipped:
+                return skippedQueue;
+            case Default:
+            default:
+                return defaultQueue;
+        }
+    }
+
+    public boolean isInLoop() {
+        return inLoop.get();
+    }
+
+    @Override
+    public T current() {
+        return current;
+    }
+
+    @Override
+    public T pass() {
+        return answer(ActionHistory.OP_PASS, passedQueue);
+    }
+
+    @Override
+    public T skip() {
+        return answer(ActionHistory.OP_SKIP, skippedQueue);
+    }
+
+    private T answer(int op, IndexedDeque<T> target) {
+        if (null == history || null == current || inLoop.get()) {
+            currentTo(target);
+            return next();
+        }
+        int slot = history.push(op, historyMapper.idOf(current), ordinalOf(lastDeque), intervalToLastReview);
+        currentTo(target);
+        next();
+        history.complete(slot, null == current ? NO_DEQUE : ordinalOf(lastDeque), intervalToLastReview);
+        return current;
+    }
+
+    /**
+     * Record pass()/skip() outside loops so they can be undone, see ActionHistory.
+     *
+     * @param capacity number of actions that can be undone
+     * @param mapper   gives the ids recorded(and handed to listener)
+     * @param listener receives every action that can no longer be undone
+     */
+    public void enableHistory(int capacity, IdMapper<T> mapper, ActionHistory.OnCommitListener listener) {
+        commitHistory();
+        history = new ActionHistory(capacity, listener);
+        historyMapper = mapper;
+        if (null != restoredHistory) {
+            history.takeFrom(restoredHistory);
+            restoredHistory = null;
+        }
+    }
+
+    /**
+     * Make every recorded action final(eg. before the state is persisted).
+     */
+    public void commitHistory() {
+        if (null != history) {
+            history.commitAll();
+        }
+    }
+
+    public boolean canUndo() {
+        return null != history && !inLoop.get() && history.canUndo();
+    }
+
+    public boolean canRedo() {
+        return null != history && !inLoop.get() && history.canRedo();
+    }
+
+    /**
+     * Take back the last pass()/skip(), every item goes back to its exact position. O(1).
+     *
+     * @return the current item(the one answered by the action undone)
+     */
+    public T undo() {
+        if (!canUndo()) {
+            return current;
+        }
+        int slot = history.undo();
+        IndexedDeque<T> target = history.opAt(slot) == ActionHistory.OP_PASS ? passedQueue : skippedQueue;
+        T answered = target.peekLast();
+        if (null == answered || historyMapper.idOf(answered) != history.itemIDAt(slot)) {
+            //deques were changed behind the history(eg. through getRawDeque()), give up undoing
+            history.redo();
+            history.commitAll();
+            return current;
+        }
+        int nextSource = history.nextSourceAt(slot);
+        if (nextSource != NO_DEQUE && null != current) {
+            dequeOf(nextSource).addFirst(current);
+        }
+        target.pollLast();
+        current = answered;
+        lastDeque = dequeOf(history.sourceAt(slot));
+        intervalToLastReview = history.intervalBeforeAt(slot);
+        return current;
+    }
+
+    /**
+     * Apply again the last action undone, taking the same next item as the first time.
+     */
+    public T redo() {
+        if (!canRedo() || null == current) {
+            return current;
+        }
+        int slot = history.redo();
+        IndexedDeque<T> target = history.opAt(slot) == ActionHistory.OP_PASS ? passedQueue : skippedQueue;
+        target.add(current);
+        int nextSource = history.nextSourceAt(slot);
+        if (nextSource == NO_DEQUE) {
+            current = null;
+        } else {
+            nextFrom(dequeOf(nextSource));
+        }
+        intervalToLastReview = history.intervalAfterAt(slot);
+        return current;
+    }
+
+
+    @Override
+    public T startLoop(DataSource loopSource) {
+        //loops reorder the deques, actions before can not be undone exactly
+        commitHistory();
+        //can not loop in default queue(meaningless)
+        if (inLoop.compareAndSet(false, true) && loopSource != DataSource.Default) {
+            loopDeque = getRawDeque(loopSource);
+            beforeLoop = current;
+            dequeBeforeLoop=lastDeque;
+            if (loopDeque == lastDeque) {
+                //not switching here
+                return current;
+            } else {
+                currentTo(lastDeque);
+                return next();
+            }
+        }
+        //below should never get executed, maybe replace here with exception
+        currentTo(skippedQueue);
+        return next();
+    }
+
+    @Override
+    public T loop() {
+        currentTo(loopDeque);
+        return next();
+    }
+
+    @Override
+    public T endLoop() {
+        if (inLoop.compareAndSet(true, false)) {
+            if (current == beforeLoop) {
+                return current;
+            } else {
+                //O(1) with IndexedDeque, however long the deque is
+                if (dequeBeforeLoop.remove(beforeLoop)) {
+                    currentTo(loopDeque);
+                    lastDeque=dequeBeforeLoop;
+                    current = beforeLoop;
+                    return current;
+                }
+            }
+
+
+        }
+        //below should never get executed, maybe replaced by exception handler
+        currentTo(skippedQueue);
+        return next();
+    }
+
+
+    @Override
+    public void append(Collection<? extends T> items) {
+        defaultQueue.addAll(items);
+        if (null == current && !inLoop.get()) {
+            //the last action recorded no next item, it can not be undone anymore
+            commitHistory();
+            next();
+        }
+    }
+
+
+    private int ordinalOf(IndexedDeque<T> deque) {
+        if (null == deque) {
+            return NO_DEQUE;
+        }
+        return deque == passedQueue ? DataSource.Passed.ordinal()
+                : deque == skippedQueue ? DataSource.Skipped.ordinal() : DataSource.Default.ordinal();
+    }
+
+    /**
+     * @param required whether NO_DEQUE is rejected
+     */
+    private static boolean isValidOrdinal(int ordinal, boolean required) {
+        return (!required && ordinal == NO_DEQUE) || ordinal < DataSource.values().length;
+    }
+
+    private IndexedDeque<T> dequeOf(int ordinal) {
+        return ordinal == NO_DEQUE ? null : getRawDeque(DataSource.values()[ordinal]);
+    }
+
+    /**
+     * Compact binary snapshot of the whole state: current item, order of every deque, loop state,
+     * intervalToLastReview and the actions that can be undone(uncommitted, see enableHistory()). Ids are delta+varint encoded, about 1~2 bytes per item for
+     * clustered ids, cheap enough for every onSaveInstanceState().
+     * <p>
+     * Only queues built on this class(eg. SimpleOperableQueue) can be snapshotted, this is not part
+     * of OperableQueue: the other queues keep their state elsewhere(eg. SpacedRepetitionQueue in
+     * its ScheduleStore) and are built again instead.
+     */
+    public byte[] snapshot(IdMapper<T> mapper) {
+        SnapshotBuffer buffer = new SnapshotBuffer(16 + 2 * (defaultQueue.size() + passedQueue.size() + skippedQueue.size()));
+        boolean looping = inLoop.get();
+        int flags = (null != current ? FLAG_CURRENT : 0)
+                | (looping ? FLAG_IN_LOOP : 0)
+                | (looping && null != beforeLoop ? FLAG_BEFORE_LOOP : 0)
+                | (null != history && history.size() > 0 ? FLAG_HISTORY : 0);
+        buffer.writeByte(SNAPSHOT_VERSION);
+        buffer.writeByte(flags);
+        buffer.writeVarLong(intervalToLastReview);
+        buffer.writeByte(ordinalOf(lastDeque));
+        buffer.writeByte(looping ? ordinalOf(loopDeque) : NO_DEQUE);
+        buffer.writeByte(looping ? ordinalOf(dequeBeforeLoop) : NO_DEQUE);
+        if (null != current) {
+            buffer.writeID(mapper.idOf(current));
+        }
+        if ((flags & FLAG_BEFORE_LOOP) != 0) {
+            buffer.writeID(mapper.idOf(beforeLoop));
+        }
+        for (DataSource dataSource : DataSource.values()) {
+            IndexedDeque<T> deque = getRawDeque(dataSource);
+            buffer.writeVarLong(deque.size());
+            for (T item : deque) {
+                buffer.writeID(mapper.idOf(item));
+            }
+        }
+        if ((flags & FLAG_HISTORY) != 0) {
+            history.writeTo(buffer);
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Replace the whole state with a snapshot, items are appended in snapshot order(no sorting).
+     * Ids the mapper can no longer resolve are dropped. Actions of the snapshot that can be undone
+     * are taken over by the history, or by the one enabled next if there is none.
+     *
+     * @return false if the snapshot is malformed(the state is left unchanged)
+     */
+    public boolean restore(byte[] snapshot, IdMapper<T> mapper) {
+        IndexedDeque<T>[] deques;
+        ActionHistory readHistory = null;
+        T restoredCurrent = null;
+        T restoredBeforeLoop = null;
+        int flags;
+        int interval;
+        int lastOrdinal;
+        int loopOrdinal;
+        int beforeLoopOrdinal;
+        try {
+            SnapshotBuffer buffer = new SnapshotBuffer(snapshot);
+            if (buffer.readByte() != SNAPSHOT_VERSION) {
+                return false;
+            }
+            flags = buffer.readByte();
+            interval = (int) buffer.readVarLong();
+            lastOrdinal = buffer.readByte();
+            loopOrdinal = buffer.readByte();
+            beforeLoopOrdinal = buffer.readByte();
+            //a loop needs both its deque and the one to go back to
+            boolean looping = (flags & FLAG_IN_LOOP) != 0;
+            if (!isValidOrdinal(lastOrdinal, true)
+                    || !isValidOrdinal(loopOrdinal, looping)
+                    || !isValidOrdinal(beforeLoopOrdinal, looping)) {
+                return false;
+            }
+            if ((flags & FLAG_CURRENT) != 0) {
+                restoredCurrent = mapper.itemOf(buffer.readID());
+            }
+            if ((flags & FLAG_BEFORE_LOOP) != 0) {
+                restoredBeforeLoop = mapper.itemOf(buffer.readID());
+            }
+            @SuppressWarnings({"unchecked", "rawtypes"})
+            IndexedDeque<T>[] read = new IndexedDeque[DataSource.values().length];
+            for (int i = 0; i < read.length; i++) {
+                long count = buffer.readVarLong();
+                read[i] = new IndexedDeque<>();
+                for (long j = 0; j < count; j++) {
+                    T item = mapper.itemOf(buffer.readID());
+                    if (null != item) {
+                        read[i].add(item);
+                    }
+                }
+            }
+            deques = read;
+            if ((flags & FLAG_HISTORY) != 0) {
+                readHistory = ActionHistory.readFrom(buffer, read.length);
+            }
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            return false;
+        }
+
+        commitHistory();
+        defaultQueue = deques[DataSource.Default.ordinal()];
+        passedQueue = deques[DataSource.Passed.ordinal()];
+        skippedQueue = deques[DataSource.Skipped.ordinal()];
+        intervalToLastReview = interval;
+        current = restoredCurrent;
+        lastDeque = dequeOf(lastOrdinal);
+        boolean looping = (flags & FLAG_IN_LOOP) != 0;
+        inLoop.set(looping);
+        loopDeque = looping ? dequeOf(loopOrdinal) : null;
+        dequeBeforeLoop = looping ? dequeOf(beforeLoopOrdinal) : null;
+        beforeLoop = restoredBeforeLoop;
+        if (null == current && !looping) {
+            next();
+        }
+        restoredHistory = null;
+        if (null != readHistory) {
+            if (null != history) {
+                history.takeFrom(readHistory);
+            } else {
+                restoredHistory = readHistory;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("current: %s\npassedDeque: %s\nskippedDeque: %s\ndefaultDeque: %s\n",
+                current, passedQueue, skippedQueue, defaultQueue);
+    }
+
+}
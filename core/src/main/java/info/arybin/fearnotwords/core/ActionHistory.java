@@ -0,0 +1,228 @@
+package info.arybin.fearnotwords.core;
+
+/**
+ * Bounded undo/redo log of pass/skip actions, a ring buffer over primitive arrays(no allocation
+ * per action).
+ * <p>
+ * Every entry records the answered item id, the deque it was taken from, the deque the next item
+ * was taken from and intervalToLastReview before/after, which is all an AbstractOperableQueue
+ * needs to put every item back at its exact position. An entry is committed(handed to the
+ * OnCommitListener) only when it is evicted by a newer one or by commitAll(), undone entries
+ * are dropped silently once a new action is recorded.
+ * <p>
+ * Note: NOT THREAD SAFE.
+ */
+public class ActionHistory {
+
+    public interface OnCommitListener {
+        /**
+         * @param op     OP_PASS or OP_SKIP
+         * @param itemID id of the answered item
+         */
+        void onCommitted(int op, long itemID);
+    }
+
+    public static final int OP_PASS = 1;
+    public static final int OP_SKIP = 2;
+
+    //same as the snapshot's, sources are stored as unsigned bytes
+    static final int NO_DEQUE = 0xFF;
+
+    private final byte[] ops;
+    private final long[] itemIDs;
+    private final byte[] sources;
+    private final byte[] nextSources;
+    private final int[] intervalsBefore;
+    private final int[] intervalsAfter;
+    private final OnCommitListener listener;
+
+    //physical index of the oldest entry
+    private int start = 0;
+    //entries stored, including undone ones(available to redo)
+    private int count = 0;
+    //entries applied, entries in [cursor, count) are undone
+    private int cursor = 0;
+
+    public ActionHistory(int capacity, OnCommitListener listener) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity: " + capacity);
+        }
+        ops = new byte[capacity];
+        itemIDs = new long[capacity];
+        sources = new byte[capacity];
+        nextSources = new byte[capacity];
+        intervalsBefore = new int[capacity];
+        intervalsAfter = new int[capacity];
+        this.listener = listener;
+    }
+
+    private int physical(int logical) {
+        int i = start + logical;
+        return i < ops.length ? i : i - ops.length;
+    }
+
+    /**
+     * @return slot of the new entry
+     */
+    int push(int op, long itemID, int source, int intervalBefore) {
+        //a new action makes the undone entries unreachable
+        count = cursor;
+        if (count == ops.length) {
+            commit(start);
+            start = physical(1);
+            count -= 1;
+            cursor -= 1;
+        }
+        int slot = physical(count);
+        ops[slot] = (byte) op;
+        itemIDs[slot] = itemID;
+        sources[slot] = (byte) source;
+        nextSources[slot] = (byte) NO_DEQUE;
+        intervalsBefore[slot] = intervalBefore;
+        count += 1;
+        cursor += 1;
+        return slot;
+    }
+
+    void complete(int slot, int nextSource, int intervalAfter) {
+        nextSources[slot] = (byte) nextSource;
+        intervalsAfter[slot] = intervalAfter;
+    }
+
+    public boolean canUndo() {
+        return cursor > 0;
+    }
+
+    public boolean canRedo() {
+        return cursor < count;
+    }
+
+    /**
+     * @return slot of the entry to undo, -1 if none
+     */
+    int undo() {
+        if (cursor == 0) {
+            return -1;
+        }
+        cursor -= 1;
+        return physical(cursor);
+    }
+
+    /**
+     * @return slot of the entry to redo, -1 if none
+     */
+    int redo() {
+        if (cursor == count) {
+            return -1;
+        }
+        return physical(cursor++);
+    }
+
+    /**
+     * Commit every applied entry and drop the undone ones.
+     */
+    public void commitAll() {
+        for (int i = 0; i < cursor; i++) {
+            commit(physical(i));
+        }
+        start = 0;
+        count = 0;
+        cursor = 0;
+    }
+
+    private void commit(int slot) {
+        if (null != listener) {
+            listener.onCommitted(ops[slot], itemIDs[slot]);
+        }
+    }
+
+    public int getCapacity() {
+        return ops.length;
+    }
+
+    /**
+     * @return number of entries that can be undone
+     */
+    public int size() {
+        return cursor;
+    }
+
+    int opAt(int slot) {
+        return ops[slot];
+    }
+
+    long itemIDAt(int slot) {
+        return itemIDs[slot];
+    }
+
+    int sourceAt(int slot) {
+        return sources[slot] & 0xFF;
+    }
+
+    int nextSourceAt(int slot) {
+        return nextSources[slot] & 0xFF;
+    }
+
+    int intervalBeforeAt(int slot) {
+        return intervalsBefore[slot];
+    }
+
+    int intervalAfterAt(int slot) {
+        return intervalsAfter[slot];
+    }
+
+    /**
+     * Write the applied entries, oldest first, undone ones are dropped.
+     */
+    void writeTo(SnapshotBuffer buffer) {
+        buffer.writeVarLong(cursor);
+        for (int i = 0; i < cursor; i++) {
+            int slot = physical(i);
+            buffer.writeByte(ops[slot]);
+            buffer.writeID(itemIDs[slot]);
+            buffer.writeByte(sourceAt(slot));
+            buffer.writeByte(nextSourceAt(slot));
+            buffer.writeVarLong(intervalsBefore[slot]);
+            buffer.writeVarLong(intervalsAfter[slot]);
+        }
+    }
+
+    /**
+     * Read entries written by writeTo() into a history committing to nobody, see takeFrom().
+     *
+     * @throws IllegalArgumentException if an entry is malformed
+     */
+    static ActionHistory readFrom(SnapshotBuffer buffer, int dequeCount) {
+        int entries = (int) buffer.readVarLong();
+        if (entries < 0) {
+            throw new IllegalArgumentException("entries: " + entries);
+        }
+        ActionHistory history = new ActionHistory(Math.max(1, entries), null);
+        for (int i = 0; i < entries; i++) {
+            int op = buffer.readByte();
+            long itemID = buffer.readID();
+            int source = buffer.readByte();
+            int nextSource = buffer.readByte();
+            int intervalBefore = (int) buffer.readVarLong();
+            int intervalAfter = (int) buffer.readVarLong();
+            if ((op != OP_PASS && op != OP_SKIP) || source >= dequeCount
+                    || (nextSource != NO_DEQUE && nextSource >= dequeCount)) {
+                throw new IllegalArgumentException("malformed entry " + i);
+            }
+            history.complete(history.push(op, itemID, source, intervalBefore), nextSource, intervalAfter);
+        }
+        return history;
+    }
+
+    /**
+     * Append the applied entries of other(eg. read from a snapshot), the oldest ones are committed
+     * if they do not fit.
+     */
+    void takeFrom(ActionHistory other) {
+        for (int i = 0; i < other.cursor; i++) {
+            int from = other.physical(i);
+            int slot = push(other.ops[from], other.itemIDs[from], other.sourceAt(from), other.intervalsBefore[from]);
+            complete(slot, other.nextSourceAt(from), other.intervalsAfter[from]);
+        }
+    }
+}
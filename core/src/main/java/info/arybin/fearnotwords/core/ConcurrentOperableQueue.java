@@ -0,0 +1,283 @@
+package info.arybin.fearnotwords.core;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An OperableQueue whose Default and Skipped deques may be appended from any thread
+ * (eg. a loader thread adding pages) while one consumer thread(eg. main thread) calls
+ * pass()/skip()/loops without ever blocking.
+ * <p>
+ * Every deque is a consumer confined ArrayDeque(its head, where items are put back and removed
+ * during loops) followed by a lock free ConcurrentLinkedQueue(its tail, where producers append)
+ * with an AtomicInteger size, since ConcurrentLinkedQueue#size() walks the whole queue. Consumer
+ * state(current item, loop state) is confined to the consumer thread as well, thus an item
+ * appended to an exhausted queue is picked up by the next current() call of the consumer.
+ * <p>
+ * Note: current()/pass()/skip()/startLoop()/loop()/endLoop()/size()/getRawDeque() must be called
+ * in ONE thread, append()/appendSkipped() are safe in any thread.
+ */
+public class ConcurrentOperableQueue<T> implements OperableQueue<T> {
+
+    private static class Lane<T> {
+        //confined to the consumer thread, always before the items of tail
+        final ArrayDeque<T> head = new ArrayDeque<>();
+        final ConcurrentLinkedQueue<T> tail = new ConcurrentLinkedQueue<>();
+        //incremented before an item is published to tail, so it is never below the real size
+        final AtomicInteger tailSize = new AtomicInteger(0);
+
+        /**
+         * Safe in any thread.
+         */
+        void add(T item) {
+            tailSize.incrementAndGet();
+            tail.add(item);
+        }
+
+        void addFirst(T item) {
+            head.addFirst(item);
+        }
+
+        void addAll(Collection<? extends T> items) {
+            for (T item : items) {
+                add(item);
+            }
+        }
+
+        T poll() {
+            T item = head.poll();
+            if (null == item) {
+                item = tail.poll();
+                if (null != item) {
+                    tailSize.decrementAndGet();
+                }
+            }
+            return item;
+        }
+
+        /**
+         * Move everything published so far into head, the order is kept.
+         */
+        ArrayDeque<T> drain() {
+            T item;
+            while (null != (item = tail.poll())) {
+                tailSize.decrementAndGet();
+                head.add(item);
+            }
+            return head;
+        }
+
+        /**
+         * @param fromHead whether to remove the first occurrence, or the last one
+         */
+        boolean remove(T item, boolean fromHead) {
+            if (fromHead && head.removeFirstOccurrence(item)) {
+                return true;
+            }
+            drain();
+            return fromHead ? head.removeFirstOccurrence(item) : head.removeLastOccurrence(item);
+        }
+
+        int size() {
+            return head.size() + tailSize.get();
+        }
+
+        @Override
+        public String toString() {
+            return head.toString() + tail.toString();
+        }
+    }
+
+    private static Random random = new Random();
+
+    private final Lane<T> defaultLane = new Lane<>();
+    private final Lane<T> skippedLane = new Lane<>();
+    private final Lane<T> passedLane = new Lane<>();
+
+    //below are confined to the consumer thread
+    private T current;
+    private boolean inLoop = false;
+    private Lane<T> loopLane;
+    private Lane<T> lastLane;
+    private Lane<T> laneBeforeLoop;
+    private T beforeLoop;
+    private int intervalToLastReview = 0;
+
+    private ConcurrentOperableQueue(Collection<? extends T> source, Collection<? extends T> skipped) {
+        defaultLane.addAll(source);
+        skippedLane.addAll(skipped);
+        lastLane = defaultLane;
+        current = defaultLane.poll();
+    }
+
+    /**
+     * Unlike SimpleOperableQueue, an empty source is allowed(items may be appended later).
+     */
+    public static <S> ConcurrentOperableQueue<S> buildFrom(Collection<? extends S> source,
+                                                           Collection<? extends S> skipped) {
+        if (null == source || null == skipped) {
+            return null;
+        }
+        return new ConcurrentOperableQueue<>(source, skipped);
+    }
+
+    public static <S> ConcurrentOperableQueue<S> buildFrom(Collection<? extends S> source) {
+        if (null == source) {
+            return null;
+        }
+        return new ConcurrentOperableQueue<>(source, Collections.<S>emptyList());
+    }
+
+    protected boolean shouldReview(int intervalToLastReview) {
+        //same strategy as SimpleOperableQueue
+        return skippedLane.size() > 10 || intervalToLastReview > 3 || (random.nextInt(30) < 2);
+    }
+
+    private Lane<T> laneOf(DataSource dataSource) {
+        switch (dataSource) {
+            case Passed:
+                return passedLane;
+            case Skipped:
+                return skippedLane;
+            case Default:
+            default:
+                return defaultLane;
+        }
+    }
+
+    private void currentTo(Lane<T> lane) {
+        if (null != current) {
+            if (lane == defaultLane) {
+                //only use in loop
+                defaultLane.addFirst(current);
+            } else {
+                lane.add(current);
+            }
+        }
+    }
+
+    private T nextFrom(Lane<T> lane) {
+        current = lane.poll();
+        lastLane = lane;
+        return current;
+    }
+
+    private T next() {
+        if (inLoop) {
+            return nextFrom(loopLane);
+        }
+        //a size read here may count an item not published yet, fall back if a poll misses
+        if (skippedLane.size() > 0
+                && (defaultLane.size() == 0 || shouldReview(intervalToLastReview++))) {
+            intervalToLastReview = 0;
+            if (null != nextFrom(skippedLane)) {
+                return current;
+            }
+        }
+        if (null != nextFrom(defaultLane)) {
+            return current;
+        }
+        return nextFrom(skippedLane);
+    }
+
+    @Override
+    public T current() {
+        if (null == current && !inLoop) {
+            //pick up items appended after the queue ran dry
+            next();
+        }
+        return current;
+    }
+
+    @Override
+    public T pass() {
+        currentTo(passedLane);
+        return next();
+    }
+
+    @Override
+    public T skip() {
+        currentTo(skippedLane);
+        return next();
+    }
+
+    @Override
+    public T startLoop(DataSource loopSource) {
+        //can not loop in default queue(meaningless)
+        if (inLoop || loopSource == DataSource.Default) {
+            return current;
+        }
+        inLoop = true;
+        loopLane = laneOf(loopSource);
+        beforeLoop = current;
+        laneBeforeLoop = lastLane;
+        if (loopLane == lastLane) {
+            //not switching here
+            return current;
+        }
+        currentTo(lastLane);
+        return next();
+    }
+
+    @Override
+    public T loop() {
+        currentTo(loopLane);
+        return next();
+    }
+
+    @Override
+    public T endLoop() {
+        if (!inLoop) {
+            return current;
+        }
+        inLoop = false;
+        //currentTo() put it at the head of default lane, or at the tail of the others
+        if (null != beforeLoop && current != beforeLoop
+                && laneBeforeLoop.remove(beforeLoop, laneBeforeLoop == defaultLane)) {
+            currentTo(loopLane);
+            lastLane = laneBeforeLoop;
+            current = beforeLoop;
+        }
+        beforeLoop = null;
+        return current;
+    }
+
+    /**
+     * Safe in any thread.
+     */
+    @Override
+    public void append(Collection<? extends T> items) {
+        defaultLane.addAll(items);
+    }
+
+    /**
+     * Safe in any thread.
+     */
+    public void appendSkipped(Collection<? extends T> items) {
+        skippedLane.addAll(items);
+    }
+
+    public int size(DataSource dataSource) {
+        return laneOf(dataSource).size();
+    }
+
+    /**
+     * Items appended so far are moved into the returned deque, changes made to it are reflected
+     * in size().
+     */
+    @Override
+    public Deque<T> getRawDeque(DataSource dataSource) {
+        return laneOf(dataSource).drain();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("current: %s\npassedDeque: %s\nskippedDeque: %s\ndefaultDeque: %s\n",
+                current, passedLane, skippedLane, defaultLane);
+    }
+}
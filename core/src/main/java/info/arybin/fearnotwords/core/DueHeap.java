@@ -0,0 +1,140 @@
+package info.arybin.fearnotwords.core;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Binary min-heap of items keyed by due time, backed by primitive arrays.
+ * <p>
+ * An item may be pushed again after its Schedule changed, the older entries are dropped lazily
+ * when they reach the top(their version no longer matches the Schedule).
+ */
+class DueHeap<T> {
+
+    private long[] dues;
+    private int[] versions;
+    private Object[] items;
+    private Schedule[] schedules;
+    private int size = 0;
+
+    DueHeap() {
+        this(16);
+    }
+
+    DueHeap(int capacity) {
+        capacity = Math.max(capacity, 2);
+        dues = new long[capacity];
+        versions = new int[capacity];
+        items = new Object[capacity];
+        schedules = new Schedule[capacity];
+    }
+
+    void push(T item, Schedule schedule) {
+        if (size == dues.length) {
+            int capacity = size << 1;
+            dues = Arrays.copyOf(dues, capacity);
+            versions = Arrays.copyOf(versions, capacity);
+            items = Arrays.copyOf(items, capacity);
+            schedules = Arrays.copyOf(schedules, capacity);
+        }
+        set(size, schedule.getDue(), schedule.version, item, schedule);
+        siftUp(size++);
+    }
+
+    /**
+     * @return due time of the top(valid) item, Long.MAX_VALUE if empty
+     */
+    long peekDue() {
+        dropStale();
+        return size == 0 ? Long.MAX_VALUE : dues[0];
+    }
+
+    @SuppressWarnings("unchecked")
+    T poll() {
+        dropStale();
+        if (size == 0) {
+            return null;
+        }
+        T top = (T) items[0];
+        removeTop();
+        return top;
+    }
+
+    /**
+     * @return number of entries, including stale ones not dropped yet
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Copy the valid items in heap order(not sorted).
+     */
+    @SuppressWarnings("unchecked")
+    void copyValidTo(Collection<? super T> target) {
+        for (int i = 0; i < size; i++) {
+            if (versions[i] == schedules[i].version) {
+                target.add((T) items[i]);
+            }
+        }
+    }
+
+    private void dropStale() {
+        while (size > 0 && versions[0] != schedules[0].version) {
+            removeTop();
+        }
+    }
+
+    private void removeTop() {
+        size -= 1;
+        set(0, dues[size], versions[size], items[size], schedules[size]);
+        items[size] = null;
+        schedules[size] = null;
+        if (size > 0) {
+            siftDown(0);
+        }
+    }
+
+    private void set(int index, long due, int version, Object item, Schedule schedule) {
+        dues[index] = due;
+        versions[index] = version;
+        items[index] = item;
+        schedules[index] = schedule;
+    }
+
+    private void swap(int i, int j) {
+        long due = dues[i];
+        int version = versions[i];
+        Object item = items[i];
+        Schedule schedule = schedules[i];
+        set(i, dues[j], versions[j], items[j], schedules[j]);
+        set(j, due, version, item, schedule);
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (dues[parent] <= dues[index]) {
+                break;
+            }
+            swap(parent, index);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        int half = size >>> 1;
+        while (index < half) {
+            int child = (index << 1) + 1;
+            int right = child + 1;
+            if (right < size && dues[right] < dues[child]) {
+                child = right;
+            }
+            if (dues[index] <= dues[child]) {
+                break;
+            }
+            swap(index, child);
+            index = child;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package info.arybin.fearnotwords.core;
+
+/**
+ * Maps queue items to stable ids and back(eg. Memorable <-> entity id), used by snapshots.
+ */
+public interface IdMapper<T> {
+    long idOf(T item);
+
+    /**
+     * @return null if the item of id is not available(anymore)
+     */
+    T itemOf(long id);
+}
@@ -0,0 +1,705 @@
+package info.arybin.fearnotwords.core;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.Executor;
+
+/**
+ * An OperableQueue keeping only primitive ids in its deques, items are hydrated on demand.
+ * <p>
+ * A sliding window(current item, the item before loop and the next windowSize ids of every deque
+ * that next() may pick from) is hydrated in background through the Hydrator, items leaving the
+ * window are released, so memory stays flat however many ids are queued.
+ * <p>
+ * current() never blocks: if the window has not caught up yet it returns the placeholder of the
+ * Hydrator, the OnHydratedListener is told once the real item arrives. getRawDeque() is a view
+ * hydrating only what is read, page by page in the calling thread, changes made to it are written
+ * through to the ids, use getRawIDs() when ids suffice.
+ * <p>
+ * Note: NOT THREAD SAFE(ONLY ACCESS IN ONE THREAD), only the window is shared with the executor.
+ */
+public class IdOperableQueue<T> implements OperableQueue<T> {
+
+    public interface Hydrator<T> {
+        long idOf(T item);
+
+        /**
+         * Called in background, ids missing in storage may be absent from the result.
+         */
+        List<T> hydrate(long[] ids);
+
+        /**
+         * @return a cheap stand-in returned by current() while the item is being hydrated
+         */
+        T placeholderOf(long id);
+    }
+
+    public interface OnHydratedListener<T> {
+        /**
+         * Called in the executor thread once the item current() stood in for is hydrated.
+         */
+        void onHydrated(T item);
+
+        /**
+         * Called in the executor thread if the Hydrator threw, ids are retried by a later refresh
+         * of the window(eg. current() of an item still missing).
+         */
+        void onHydrationFailed(long[] ids, Exception e);
+    }
+
+    public static final int DEFAULT_WINDOW_SIZE = 8;
+
+    private static Random random = new Random();
+
+    private final Hydrator<T> hydrator;
+    private final Executor executor;
+    private final int windowSize;
+
+    private final LongDeque defaultIDs;
+    private final LongDeque skippedIDs;
+    private final LongDeque passedIDs;
+
+    private boolean inLoop = false;
+    private LongDeque loopIDs;
+    private LongDeque lastIDs;
+    private LongDeque idsBeforeLoop;
+
+    private boolean hasCurrent = false;
+    private long currentID;
+    private boolean hasBeforeLoop = false;
+    private long beforeLoopID;
+    private int intervalToLastReview = 0;
+
+    //id -> item, or PENDING while hydrating, guarded by itself
+    private final LongObjectMap<Object> window;
+    private static final Object PENDING = new Object();
+    private int generation = 0;
+    private final long[] missing;
+    //id current() returned a placeholder for, guarded by window
+    private boolean awaiting = false;
+    private long awaitingID;
+    private volatile OnHydratedListener<T> onHydratedListener;
+
+    private IdOperableQueue(long[] ids, Hydrator<T> hydrator, Executor executor, int windowSize) {
+        this.hydrator = hydrator;
+        this.executor = executor;
+        this.windowSize = windowSize;
+        //current, before loop and the heads of at most 2 deques
+        missing = new long[windowSize * 2 + 2];
+        window = new LongObjectMap<>(missing.length);
+        defaultIDs = new LongDeque(ids);
+        skippedIDs = new LongDeque();
+        passedIDs = new LongDeque();
+        lastIDs = defaultIDs;
+        nextFrom(defaultIDs);
+        refreshWindow();
+    }
+
+    public static <S> IdOperableQueue<S> buildFrom(long[] ids, Hydrator<S> hydrator, Executor executor) {
+        return buildFrom(ids, hydrator, executor, DEFAULT_WINDOW_SIZE);
+    }
+
+    public static <S> IdOperableQueue<S> buildFrom(long[] ids, Hydrator<S> hydrator,
+                                                   Executor executor, int windowSize) {
+        if (null == ids || null == hydrator || null == executor || ids.length == 0 || windowSize < 1) {
+            return null;
+        }
+        return new IdOperableQueue<>(ids, hydrator, executor, windowSize);
+    }
+
+    protected boolean shouldReview(int intervalToLastReview) {
+        //same strategy as SimpleOperableQueue
+        return skippedIDs.size() > 10 || intervalToLastReview > 3 || (random.nextInt(30) < 2);
+    }
+
+    private void currentTo(LongDeque ids) {
+        if (hasCurrent) {
+            if (ids == defaultIDs) {
+                //only use in loop
+                defaultIDs.addFirst(currentID);
+            } else {
+                ids.add(currentID);
+            }
+        }
+    }
+
+    private void nextFrom(LongDeque ids) {
+        lastIDs = ids;
+        hasCurrent = !ids.isEmpty();
+        if (hasCurrent) {
+            currentID = ids.poll();
+        }
+    }
+
+    private T next() {
+        if (inLoop) {
+            nextFrom(loopIDs);
+        } else if (defaultIDs.isEmpty() && skippedIDs.isEmpty()) {
+            //end of queue
+            hasCurrent = false;
+        } else if (defaultIDs.isEmpty()) {
+            nextFrom(skippedIDs);
+        } else if (skippedIDs.isEmpty()) {
+            nextFrom(defaultIDs);
+        } else if (shouldReview(intervalToLastReview++)) {
+            intervalToLastReview = 0;
+            nextFrom(skippedIDs);
+        } else {
+            nextFrom(defaultIDs);
+        }
+        refreshWindow();
+        return current();
+    }
+
+    /**
+     * Release the items left behind and hydrate the upcoming ones in background.
+     */
+    private void refreshWindow() {
+        final long[] ids;
+        synchronized (window) {
+            generation += 1;
+            int count = 0;
+            if (hasCurrent) {
+                count = want(currentID, count);
+            }
+            if (hasBeforeLoop) {
+                count = want(beforeLoopID, count);
+            }
+            if (inLoop) {
+                count = wantHead(loopIDs, count);
+            } else {
+                count = wantHead(defaultIDs, count);
+                count = wantHead(skippedIDs, count);
+            }
+            window.retainMarked(generation);
+            if (count == 0) {
+                return;
+            }
+            ids = Arrays.copyOf(missing, count);
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                List<T> items = null;
+                Exception failure = null;
+                try {
+                    items = hydrator.hydrate(ids);
+                } catch (Exception e) {
+                    failure = e;
+                }
+                T awaited = null;
+                synchronized (window) {
+                    if (null != items) {
+                        for (T item : items) {
+                            long id = hydrator.idOf(item);
+                            //released while hydrating, or hydrated by a later request already
+                            if (PENDING == window.get(id)) {
+                                window.put(id, item);
+                                if (awaiting && awaitingID == id) {
+                                    awaiting = false;
+                                    awaited = item;
+                                }
+                            }
+                        }
+                    }
+                    //failed or missing in storage, leave them to the next refresh
+                    for (long id : ids) {
+                        if (PENDING == window.get(id)) {
+                            window.remove(id);
+                        }
+                    }
+                }
+                OnHydratedListener<T> listener = onHydratedListener;
+                if (null != listener) {
+                    if (null != failure) {
+                        listener.onHydrationFailed(ids, failure);
+                    } else if (null != awaited) {
+                        listener.onHydrated(awaited);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Keep id in the window, guarded by window.
+     *
+     * @return count of missing ids after this one
+     */
+    private int want(long id, int count) {
+        if (!window.mark(id, generation)) {
+            window.put(id, PENDING);
+            window.mark(id, generation);
+            missing[count++] = id;
+        }
+        return count;
+    }
+
+    private int wantHead(LongDeque ids, int count) {
+        for (int i = 0, n = Math.min(windowSize, ids.size()); i < n; i++) {
+            count = want(ids.get(i), count);
+        }
+        return count;
+    }
+
+    /**
+     * @return the hydrated item of id, null if not hydrated yet
+     */
+    @SuppressWarnings("unchecked")
+    private T windowItemOf(long id) {
+        synchronized (window) {
+            Object item = window.get(id);
+            return null == item || PENDING == item ? null : (T) item;
+        }
+    }
+
+    /**
+     * Hydrate ids in the calling thread, the window is used where it has them already.
+     *
+     * @return the items in the order of ids, missing ones skipped
+     */
+    private List<T> hydrateNow(long[] ids) {
+        Object[] found = new Object[ids.length];
+        long[] absent = new long[ids.length];
+        int absentCount = 0;
+        for (int i = 0; i < ids.length; i++) {
+            found[i] = windowItemOf(ids[i]);
+            if (null == found[i]) {
+                absent[absentCount++] = ids[i];
+            }
+        }
+        if (absentCount > 0) {
+            LongObjectMap<T> byID = new LongObjectMap<>(absentCount);
+            for (T item : hydrator.hydrate(Arrays.copyOf(absent, absentCount))) {
+                byID.put(hydrator.idOf(item), item);
+            }
+            for (int i = 0; i < ids.length; i++) {
+                if (null == found[i]) {
+                    found[i] = byID.get(ids[i]);
+                }
+            }
+        }
+        ArrayList<T> result = new ArrayList<>(ids.length);
+        for (Object item : found) {
+            if (null != item) {
+                @SuppressWarnings("unchecked")
+                T t = (T) item;
+                result.add(t);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the current item, or the placeholder of it while it is being hydrated
+     */
+    @Override
+    public T current() {
+        if (!hasCurrent) {
+            return null;
+        }
+        T item = windowItemOf(currentID);
+        if (null != item) {
+            return item;
+        }
+        boolean released;
+        synchronized (window) {
+            awaiting = true;
+            awaitingID = currentID;
+            released = !window.containsKey(currentID);
+        }
+        if (released) {
+            //the last hydration failed, try again
+            refreshWindow();
+        }
+        return hydrator.placeholderOf(currentID);
+    }
+
+    /**
+     * @return whether current() returns the real item(not the placeholder)
+     */
+    public boolean isCurrentHydrated() {
+        return hasCurrent && null != windowItemOf(currentID);
+    }
+
+    public void setOnHydratedListener(OnHydratedListener<T> listener) {
+        onHydratedListener = listener;
+    }
+
+    @Override
+    public T pass() {
+        currentTo(passedIDs);
+        return next();
+    }
+
+    @Override
+    public T skip() {
+        currentTo(skippedIDs);
+        return next();
+    }
+
+    @Override
+    public T startLoop(DataSource loopSource) {
+        //can not loop in default queue(meaningless)
+        if (inLoop || loopSource == DataSource.Default) {
+            return current();
+        }
+        inLoop = true;
+        loopIDs = getRawIDs(loopSource);
+        hasBeforeLoop = hasCurrent;
+        beforeLoopID = currentID;
+        idsBeforeLoop = lastIDs;
+        if (loopIDs == lastIDs) {
+            //not switching here
+            refreshWindow();
+            return current();
+        }
+        currentTo(lastIDs);
+        return next();
+    }
+
+    @Override
+    public T loop() {
+        currentTo(loopIDs);
+        return next();
+    }
+
+    @Override
+    public T endLoop() {
+        if (!inLoop) {
+            return current();
+        }
+        inLoop = false;
+        if (hasBeforeLoop && !(hasCurrent && currentID == beforeLoopID)) {
+            //currentTo() put it at the head of default deque, or at the tail of the others
+            boolean removed = idsBeforeLoop == defaultIDs
+                    ? idsBeforeLoop.removeFirstOccurrence(beforeLoopID)
+                    : idsBeforeLoop.removeLastOccurrence(beforeLoopID);
+            if (removed) {
+                currentTo(loopIDs);
+                lastIDs = idsBeforeLoop;
+                hasCurrent = true;
+                currentID = beforeLoopID;
+            }
+        }
+        hasBeforeLoop = false;
+        refreshWindow();
+        return current();
+    }
+
+    @Override
+    public void append(Collection<? extends T> items) {
+        long[] ids = new long[items.size()];
+        int i = 0;
+        for (T item : items) {
+            ids[i++] = hydrator.idOf(item);
+        }
+        appendIDs(ids);
+    }
+
+    public void appendIDs(long[] ids) {
+        defaultIDs.addAll(ids);
+        onIDsChanged();
+    }
+
+    /**
+     * Pick up ids added to an exhausted queue, or refresh the window for the new heads.
+     */
+    private void onIDsChanged() {
+        if (!hasCurrent && !inLoop) {
+            next();
+        } else {
+            refreshWindow();
+        }
+    }
+
+    public LongDeque getRawIDs(DataSource dataSource) {
+        switch (dataSource) {
+            case Passed:
+                return passedIDs;
+            case Skipped:
+                return skippedIDs;
+            case Default:
+            default:
+                return defaultIDs;
+        }
+    }
+
+    /**
+     * @return a view of the deque, items are hydrated page by page(windowSize ids) in the calling
+     * thread as they are read, it follows later changes of this queue and writes its own changes
+     * through(except removing through its iterators)
+     */
+    @Override
+    public Deque<T> getRawDeque(DataSource dataSource) {
+        return new HydratingView(getRawIDs(dataSource));
+    }
+
+    /**
+     * @return number of items currently hydrated
+     */
+    public int getWindowCount() {
+        synchronized (window) {
+            return window.size();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("current: %s\npassedDeque: %s\nskippedDeque: %s\ndefaultDeque: %s\n",
+                hasCurrent ? currentID : null, passedIDs, skippedIDs, defaultIDs);
+    }
+
+    /**
+     * Deque over a LongDeque of this queue, ids missing in storage are skipped when read.
+     */
+    private class HydratingView extends AbstractCollection<T> implements Deque<T> {
+        private final LongDeque ids;
+
+        HydratingView(LongDeque ids) {
+            this.ids = ids;
+        }
+
+        @SuppressWarnings("unchecked")
+        private long idOf(Object item) {
+            return hydrator.idOf((T) item);
+        }
+
+        /**
+         * @param first whether to take ids from the head, or from the tail
+         * @return the first item found in storage, null if none
+         */
+        private T pollHydrated(boolean first) {
+            T item = null;
+            while (null == item && !ids.isEmpty()) {
+                long id = first ? ids.poll() : ids.get(ids.size() - 1);
+                if (!first) {
+                    ids.removeLastOccurrence(id);
+                }
+                List<T> found = hydrateNow(new long[]{id});
+                item = found.isEmpty() ? null : found.get(0);
+            }
+            onIDsChanged();
+            return item;
+        }
+
+        @Override
+        public int size() {
+            return ids.size();
+        }
+
+        @Override
+        public boolean contains(Object item) {
+            return null != item && ids.contains(idOf(item));
+        }
+
+        @Override
+        public void clear() {
+            ids.clear();
+            onIDsChanged();
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return new PageIterator(ids, true);
+        }
+
+        @Override
+        public Iterator<T> descendingIterator() {
+            return new PageIterator(ids, false);
+        }
+
+        @Override
+        public T peekFirst() {
+            Iterator<T> iterator = iterator();
+            return iterator.hasNext() ? iterator.next() : null;
+        }
+
+        @Override
+        public T peekLast() {
+            Iterator<T> iterator = descendingIterator();
+            return iterator.hasNext() ? iterator.next() : null;
+        }
+
+        @Override
+        public T getFirst() {
+            T item = peekFirst();
+            if (null == item) {
+                throw new NoSuchElementException();
+            }
+            return item;
+        }
+
+        @Override
+        public T getLast() {
+            T item = peekLast();
+            if (null == item) {
+                throw new NoSuchElementException();
+            }
+            return item;
+        }
+
+        @Override
+        public T peek() {
+            return peekFirst();
+        }
+
+        @Override
+        public T element() {
+            return getFirst();
+        }
+
+        @Override
+        public void addFirst(T item) {
+            ids.addFirst(hydrator.idOf(item));
+            onIDsChanged();
+        }
+
+        @Override
+        public void addLast(T item) {
+            ids.add(hydrator.idOf(item));
+            onIDsChanged();
+        }
+
+        @Override
+        public boolean add(T item) {
+            addLast(item);
+            return true;
+        }
+
+        @Override
+        public boolean offerFirst(T item) {
+            addFirst(item);
+            return true;
+        }
+
+        @Override
+        public boolean offerLast(T item) {
+            addLast(item);
+            return true;
+        }
+
+        @Override
+        public T removeFirst() {
+            T item = pollFirst();
+            if (null == item) {
+                throw new NoSuchElementException();
+            }
+            return item;
+        }
+
+        @Override
+        public T removeLast() {
+            T item = pollLast();
+            if (null == item) {
+                throw new NoSuchElementException();
+            }
+            return item;
+        }
+
+        @Override
+        public T pollFirst() {
+            return pollHydrated(true);
+        }
+
+        @Override
+        public T pollLast() {
+            return pollHydrated(false);
+        }
+
+        @Override
+        public boolean removeFirstOccurrence(Object item) {
+            if (null == item || !ids.removeFirstOccurrence(idOf(item))) {
+                return false;
+            }
+            onIDsChanged();
+            return true;
+        }
+
+        @Override
+        public boolean removeLastOccurrence(Object item) {
+            if (null == item || !ids.removeLastOccurrence(idOf(item))) {
+                return false;
+            }
+            onIDsChanged();
+            return true;
+        }
+
+        @Override
+        public boolean remove(Object item) {
+            return removeFirstOccurrence(item);
+        }
+
+        @Override
+        public boolean offer(T item) {
+            return offerLast(item);
+        }
+
+        @Override
+        public T remove() {
+            return removeFirst();
+        }
+
+        @Override
+        public T poll() {
+            return pollFirst();
+        }
+
+        @Override
+        public void push(T item) {
+            addFirst(item);
+        }
+
+        @Override
+        public T pop() {
+            return removeFirst();
+        }
+    }
+
+    private class PageIterator implements Iterator<T> {
+        private final LongDeque ids;
+        private final boolean ascending;
+        //ids consumed so far
+        private int position = 0;
+        private Iterator<T> page;
+
+        PageIterator(LongDeque ids, boolean ascending) {
+            this.ids = ids;
+            this.ascending = ascending;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while ((null == page || !page.hasNext()) && position < ids.size()) {
+                int count = Math.min(windowSize, ids.size() - position);
+                long[] pageIDs = new long[count];
+                for (int i = 0; i < count; i++) {
+                    pageIDs[i] = ids.get(ascending ? position + i : ids.size() - 1 - position - i);
+                }
+                position += count;
+                page = hydrateNow(pageIDs).iterator();
+            }
+            return null != page && page.hasNext();
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return page.next();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,350 @@
+package info.arybin.fearnotwords.core;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A doubly linked Deque with a hash index of item -> node, so contains(), remove(Object) and
+ * removeFirstOccurrence() are O(1) on top of the usual O(1) operations at both ends.
+ * <p>
+ * Items are compared with equals()/hashCode() and must not be null(same as ArrayDeque).
+ * Duplicates are allowed, the nodes holding equal items are chained in a ring in deque order,
+ * the index points to the first of them and its ring predecessor is the last one. So removing
+ * the first/last occurrence stays O(1) however many times an item was added.
+ * <p>
+ * Note: NOT THREAD SAFE.
+ */
+public class IndexedDeque<T> extends AbstractCollection<T> implements Deque<T> {
+
+    private static class Node<T> {
+        T item;
+        Node<T> prev;
+        Node<T> next;
+        //ring of the nodes holding equal items, in deque order
+        Node<T> samePrev = this;
+        Node<T> sameNext = this;
+
+        Node(T item) {
+            this.item = item;
+        }
+    }
+
+    private final HashMap<Object, Node<T>> index;
+    private Node<T> head;
+    private Node<T> tail;
+    private int size = 0;
+    private int modCount = 0;
+
+    public IndexedDeque() {
+        index = new HashMap<>();
+    }
+
+    public IndexedDeque(Collection<? extends T> source) {
+        index = new HashMap<>(Math.max(16, source.size() * 2));
+        addAll(source);
+    }
+
+    private Node<T> link(T item, boolean first) {
+        if (null == item) {
+            throw new NullPointerException();
+        }
+        Node<T> node = new Node<>(item);
+        if (first) {
+            node.next = head;
+            if (null == head) {
+                tail = node;
+            } else {
+                head.prev = node;
+            }
+            head = node;
+        } else {
+            node.prev = tail;
+            if (null == tail) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+        }
+        Node<T> firstSame = index.get(item);
+        if (null == firstSame) {
+            index.put(item, node);
+        } else {
+            //insert before the first one in the ring, which is after the last one
+            Node<T> lastSame = firstSame.samePrev;
+            node.samePrev = lastSame;
+            node.sameNext = firstSame;
+            lastSame.sameNext = node;
+            firstSame.samePrev = node;
+            if (first) {
+                index.put(item, node);
+            }
+        }
+        size += 1;
+        modCount += 1;
+        return node;
+    }
+
+    private T unlink(Node<T> node) {
+        if (null == node.prev) {
+            head = node.next;
+        } else {
+            node.prev.next = node.next;
+        }
+        if (null == node.next) {
+            tail = node.prev;
+        } else {
+            node.next.prev = node.prev;
+        }
+        T item = node.item;
+        if (node.sameNext == node) {
+            index.remove(item);
+        } else {
+            node.samePrev.sameNext = node.sameNext;
+            node.sameNext.samePrev = node.samePrev;
+            if (index.get(item) == node) {
+                index.put(item, node.sameNext);
+            }
+        }
+        node.item = null;
+        node.prev = null;
+        node.next = null;
+        node.samePrev = null;
+        node.sameNext = null;
+        size -= 1;
+        modCount += 1;
+        return item;
+    }
+
+    @Override
+    public void addFirst(T item) {
+        link(item, true);
+    }
+
+    @Override
+    public void addLast(T item) {
+        link(item, false);
+    }
+
+    @Override
+    public boolean offerFirst(T item) {
+        link(item, true);
+        return true;
+    }
+
+    @Override
+    public boolean offerLast(T item) {
+        link(item, false);
+        return true;
+    }
+
+    @Override
+    public T removeFirst() {
+        if (null == head) {
+            throw new NoSuchElementException();
+        }
+        return unlink(head);
+    }
+
+    @Override
+    public T removeLast() {
+        if (null == tail) {
+            throw new NoSuchElementException();
+        }
+        return unlink(tail);
+    }
+
+    @Override
+    public T pollFirst() {
+        return null == head ? null : unlink(head);
+    }
+
+    @Override
+    public T pollLast() {
+        return null == tail ? null : unlink(tail);
+    }
+
+    @Override
+    public T getFirst() {
+        if (null == head) {
+            throw new NoSuchElementException();
+        }
+        return head.item;
+    }
+
+    @Override
+    public T getLast() {
+        if (null == tail) {
+            throw new NoSuchElementException();
+        }
+        return tail.item;
+    }
+
+    @Override
+    public T peekFirst() {
+        return null == head ? null : head.item;
+    }
+
+    @Override
+    public T peekLast() {
+        return null == tail ? null : tail.item;
+    }
+
+    @Override
+    public boolean removeFirstOccurrence(Object item) {
+        if (null == item) {
+            return false;
+        }
+        Node<T> node = index.get(item);
+        if (null == node) {
+            return false;
+        }
+        unlink(node);
+        return true;
+    }
+
+    @Override
+    public boolean removeLastOccurrence(Object item) {
+        if (null == item) {
+            return false;
+        }
+        Node<T> node = index.get(item);
+        if (null == node) {
+            return false;
+        }
+        unlink(node.samePrev);
+        return true;
+    }
+
+    @Override
+    public boolean add(T item) {
+        link(item, false);
+        return true;
+    }
+
+    @Override
+    public boolean offer(T item) {
+        return offerLast(item);
+    }
+
+    @Override
+    public T remove() {
+        return removeFirst();
+    }
+
+    @Override
+    public T poll() {
+        return pollFirst();
+    }
+
+    @Override
+    public T element() {
+        return getFirst();
+    }
+
+    @Override
+    public T peek() {
+        return peekFirst();
+    }
+
+    @Override
+    public void push(T item) {
+        addFirst(item);
+    }
+
+    @Override
+    public T pop() {
+        return removeFirst();
+    }
+
+    @Override
+    public boolean remove(Object item) {
+        return removeFirstOccurrence(item);
+    }
+
+    @Override
+    public boolean contains(Object item) {
+        return null != item && index.containsKey(item);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        for (Node<T> node = head; null != node; ) {
+            Node<T> next = node.next;
+            node.item = null;
+            node.prev = null;
+            node.next = null;
+            node.samePrev = null;
+            node.sameNext = null;
+            node = next;
+        }
+        head = tail = null;
+        index.clear();
+        size = 0;
+        modCount += 1;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new NodeIterator(true);
+    }
+
+    @Override
+    public Iterator<T> descendingIterator() {
+        return new NodeIterator(false);
+    }
+
+
+    private class NodeIterator implements Iterator<T> {
+        private final boolean ascending;
+        private Node<T> next;
+        private Node<T> lastReturned;
+        private int expectedModCount = modCount;
+
+        NodeIterator(boolean ascending) {
+            this.ascending = ascending;
+            next = ascending ? head : tail;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return null != next;
+        }
+
+        @Override
+        public T next() {
+            if (expectedModCount != modCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (null == next) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = next;
+            next = ascending ? next.next : next.prev;
+            return lastReturned.item;
+        }
+
+        @Override
+        public void remove() {
+            if (null == lastReturned) {
+                throw new IllegalStateException();
+            }
+            if (expectedModCount != modCount) {
+                throw new ConcurrentModificationException();
+            }
+            unlink(lastReturned);
+            lastReturned = null;
+            expectedModCount = modCount;
+        }
+    }
+}
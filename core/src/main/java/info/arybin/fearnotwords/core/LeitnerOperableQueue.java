@@ -0,0 +1,246 @@
+package info.arybin.fearnotwords.core;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * An OperableQueue with a configurable number of Leitner boxes instead of the fixed
+ * Default/Passed/Skipped deques.
+ * <p>
+ * Box 0 holds new items, box 1 the skipped(forgotten) ones, boxes 2..N-1 the passed ones by
+ * mastery: pass() moves the current item one box up(a new or skipped item goes to box 2, the last
+ * box keeps its items), skip() moves it back to box 1.
+ * <p>
+ * Every box has a weight(its review frequency), the box of the next item is chosen by smooth
+ * weighted round-robin over the non-empty boxes(eg. weights {2, 4, 1} pick B A B C B A B...),
+ * which is O(number of boxes) and allocation free, whatever the number of items. Boxes are
+ * IndexedDeques, so ending a loop is O(1) as well.
+ * <p>
+ * DataSource.Default, Skipped and Passed map to box 0, box 1 and the last box, any box is
+ * available through getBox()/startLoop(int).
+ */
+public class LeitnerOperableQueue<T> implements OperableQueue<T> {
+
+    public static final int BOX_NEW = 0;
+    public static final int BOX_SKIPPED = 1;
+    public static final int MIN_BOX_COUNT = 3;
+
+    private final IndexedDeque<T>[] boxes;
+    private final int[] weights;
+    //smooth weighted round-robin state
+    private final int[] currentWeights;
+
+    private T current;
+    private int currentBox = -1;
+
+    private boolean inLoop = false;
+    private int loopBox;
+    private T beforeLoop;
+    private int boxBeforeLoop;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private LeitnerOperableQueue(Collection<? extends T> source, int[] weights) {
+        this.weights = weights.clone();
+        currentWeights = new int[weights.length];
+        boxes = new IndexedDeque[weights.length];
+        for (int i = 0; i < boxes.length; i++) {
+            boxes[i] = new IndexedDeque<>();
+        }
+        boxes[BOX_NEW].addAll(source);
+        next();
+    }
+
+    /**
+     * @param weights review frequency of every box, at least MIN_BOX_COUNT non-negative weights
+     */
+    public static <S> LeitnerOperableQueue<S> buildFrom(Collection<? extends S> source, int[] weights) {
+        if (null == source || null == weights || weights.length < MIN_BOX_COUNT) {
+            return null;
+        }
+        for (int weight : weights) {
+            if (weight < 0) {
+                return null;
+            }
+        }
+        return new LeitnerOperableQueue<>(source, weights);
+    }
+
+    /**
+     * @return weights for boxCount boxes: new items 4, skipped 8, then halving from 4 per level(at least 1)
+     */
+    public static int[] defaultWeights(int boxCount) {
+        int[] weights = new int[Math.max(boxCount, MIN_BOX_COUNT)];
+        weights[BOX_NEW] = 4;
+        weights[BOX_SKIPPED] = 8;
+        for (int i = 2; i < weights.length; i++) {
+            weights[i] = Math.max(1, 4 >> (i - 2));
+        }
+        return weights;
+    }
+
+    private T next() {
+        if (inLoop) {
+            return nextFrom(loopBox);
+        }
+        int total = 0;
+        int best = -1;
+        for (int i = 0; i < boxes.length; i++) {
+            if (boxes[i].isEmpty()) {
+                continue;
+            }
+            currentWeights[i] += weights[i];
+            total += weights[i];
+            if (best < 0 || currentWeights[i] > currentWeights[best]) {
+                best = i;
+            }
+        }
+        if (best < 0) {
+            //end of queue
+            current = null;
+            currentBox = -1;
+            return null;
+        }
+        currentWeights[best] -= total;
+        return nextFrom(best);
+    }
+
+    private T nextFrom(int box) {
+        current = boxes[box].poll();
+        currentBox = null == current ? -1 : box;
+        return current;
+    }
+
+    private int boxAfterPass(int box) {
+        return Math.min(Math.max(box + 1, BOX_SKIPPED + 1), boxes.length - 1);
+    }
+
+    private int boxOf(DataSource dataSource) {
+        switch (dataSource) {
+            case Passed:
+                return boxes.length - 1;
+            case Skipped:
+                return BOX_SKIPPED;
+            case Default:
+            default:
+                return BOX_NEW;
+        }
+    }
+
+    @Override
+    public T current() {
+        return current;
+    }
+
+    @Override
+    public T pass() {
+        if (null != current) {
+            boxes[boxAfterPass(currentBox)].add(current);
+        }
+        return next();
+    }
+
+    @Override
+    public T skip() {
+        if (null != current) {
+            boxes[BOX_SKIPPED].add(current);
+        }
+        return next();
+    }
+
+    @Override
+    public T startLoop(DataSource dataSource) {
+        //can not loop in default queue(meaningless)
+        if (dataSource == DataSource.Default) {
+            return current;
+        }
+        return startLoop(boxOf(dataSource));
+    }
+
+    public T startLoop(int box) {
+        if (inLoop || box < 0 || box >= boxes.length || boxes[box].isEmpty()) {
+            return current;
+        }
+        inLoop = true;
+        loopBox = box;
+        beforeLoop = current;
+        boxBeforeLoop = currentBox;
+        if (null != current) {
+            //keep its place, taken back by endLoop()
+            boxes[currentBox].addFirst(current);
+        }
+        return next();
+    }
+
+    @Override
+    public T loop() {
+        if (inLoop && null != current) {
+            boxes[loopBox].add(current);
+        }
+        return next();
+    }
+
+    @Override
+    public T endLoop() {
+        if (!inLoop) {
+            return current;
+        }
+        inLoop = false;
+        if (null != current) {
+            boxes[currentBox].addFirst(current);
+        }
+        if (null != beforeLoop && boxes[boxBeforeLoop].remove(beforeLoop)) {
+            current = beforeLoop;
+            currentBox = boxBeforeLoop;
+        } else {
+            //it was answered during the loop
+            next();
+        }
+        beforeLoop = null;
+        return current;
+    }
+
+    @Override
+    public void append(Collection<? extends T> items) {
+        appendTo(BOX_NEW, items);
+    }
+
+    /**
+     * eg. restore items at their stored mastery.
+     */
+    public void appendTo(int box, Collection<? extends T> items) {
+        boxes[box].addAll(items);
+        if (null == current && !inLoop) {
+            next();
+        }
+    }
+
+    public int getBoxCount() {
+        return boxes.length;
+    }
+
+    /**
+     * @return box the current item was taken from, -1 if none
+     */
+    public int getCurrentBox() {
+        return currentBox;
+    }
+
+    public IndexedDeque<T> getBox(int box) {
+        return boxes[box];
+    }
+
+    @Override
+    public IndexedDeque<T> getRawDeque(DataSource dataSource) {
+        return boxes[boxOf(dataSource)];
+    }
+
+    @Override
+    public String toString() {
+        int[] sizes = new int[boxes.length];
+        for (int i = 0; i < boxes.length; i++) {
+            sizes[i] = boxes[i].size();
+        }
+        return String.format("current: %s(box %d)\nweights: %s\nboxes: %s\n",
+                current, currentBox, Arrays.toString(weights), Arrays.toString(sizes));
+    }
+}
@@ -0,0 +1,186 @@
+package info.arybin.fearnotwords.core;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A growable ring buffer of primitive longs(eg. entity ids), no boxing at all.
+ * <p>
+ * Note: NOT THREAD SAFE.
+ */
+public class LongDeque {
+
+    private long[] elements;
+    private int head = 0;
+    private int size = 0;
+
+    public LongDeque() {
+        this(16);
+    }
+
+    public LongDeque(int capacity) {
+        elements = new long[Math.max(capacity, 2)];
+    }
+
+    public LongDeque(long[] source) {
+        this(source.length);
+        System.arraycopy(source, 0, elements, 0, source.length);
+        size = source.length;
+    }
+
+    private void ensureCapacity(int wanted) {
+        if (wanted <= elements.length) {
+            return;
+        }
+        long[] grown = new long[Math.max(wanted, elements.length << 1)];
+        copyTo(grown);
+        elements = grown;
+        head = 0;
+    }
+
+    private void copyTo(long[] target) {
+        int firstPart = Math.min(size, elements.length - head);
+        System.arraycopy(elements, head, target, 0, firstPart);
+        System.arraycopy(elements, 0, target, firstPart, size - firstPart);
+    }
+
+    private int physical(int index) {
+        int i = head + index;
+        return i < elements.length ? i : i - elements.length;
+    }
+
+    public void add(long value) {
+        ensureCapacity(size + 1);
+        elements[physical(size)] = value;
+        size += 1;
+    }
+
+    public void addAll(long[] values) {
+        ensureCapacity(size + values.length);
+        for (long value : values) {
+            elements[physical(size)] = value;
+            size += 1;
+        }
+    }
+
+    public void addFirst(long value) {
+        ensureCapacity(size + 1);
+        head = head == 0 ? elements.length - 1 : head - 1;
+        elements[head] = value;
+        size += 1;
+    }
+
+    /**
+     * @throws NoSuchElementException if empty
+     */
+    public long poll() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        long value = elements[head];
+        head = physical(1);
+        size -= 1;
+        return value;
+    }
+
+    /**
+     * @throws NoSuchElementException if empty
+     */
+    public long peek() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return elements[head];
+    }
+
+    /**
+     * @param index 0 for the head
+     */
+    public long get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+        }
+        return elements[physical(index)];
+    }
+
+    public int indexOf(long value) {
+        for (int i = 0; i < size; i++) {
+            if (elements[physical(i)] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public int lastIndexOf(long value) {
+        for (int i = size - 1; i >= 0; i--) {
+            if (elements[physical(i)] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public boolean contains(long value) {
+        return indexOf(value) >= 0;
+    }
+
+    /**
+     * @return whether value was found
+     */
+    public boolean removeFirstOccurrence(long value) {
+        return removeAt(indexOf(value));
+    }
+
+    /**
+     * Same as removeFirstOccurrence(), but scan from the tail(O(1) for a value just added).
+     *
+     * @return whether value was found
+     */
+    public boolean removeLastOccurrence(long value) {
+        return removeAt(lastIndexOf(value));
+    }
+
+    private boolean removeAt(int index) {
+        if (index < 0) {
+            return false;
+        }
+        //shift whichever side is shorter
+        if (index < size / 2) {
+            for (int i = index; i > 0; i--) {
+                elements[physical(i)] = elements[physical(i - 1)];
+            }
+            head = physical(1);
+        } else {
+            for (int i = index; i < size - 1; i++) {
+                elements[physical(i)] = elements[physical(i + 1)];
+            }
+        }
+        size -= 1;
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    public long[] toArray() {
+        long[] result = new long[size];
+        copyTo(result);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+}
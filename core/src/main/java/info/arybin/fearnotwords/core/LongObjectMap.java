@@ -0,0 +1,183 @@
+package info.arybin.fearnotwords.core;
+
+import java.util.Arrays;
+
+/**
+ * An open addressing(linear probing) hash map of primitive long -> non null value, no boxing and
+ * no node per entry.
+ * <p>
+ * Entries can be marked with a generation, retainMarked() then drops everything not marked with
+ * the given generation in one pass(eg. release a sliding window without building a set of the
+ * wanted keys).
+ * <p>
+ * Note: NOT THREAD SAFE.
+ */
+class LongObjectMap<V> {
+
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;
+    //null for a free slot
+    private Object[] values;
+    private int[] marks;
+    private int mask;
+    private int size = 0;
+
+    LongObjectMap(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = 4;
+        while (capacity * LOAD_FACTOR < expectedSize) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        marks = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    private int slotOf(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private int find(long key) {
+        for (int slot = slotOf(key); null != values[slot]; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(long key) {
+        int slot = find(key);
+        return slot < 0 ? null : (V) values[slot];
+    }
+
+    boolean containsKey(long key) {
+        return find(key) >= 0;
+    }
+
+    /**
+     * @return the previous value, null if absent
+     */
+    @SuppressWarnings("unchecked")
+    V put(long key, V value) {
+        if (null == value) {
+            throw new NullPointerException();
+        }
+        int slot = slotOf(key);
+        for (; null != values[slot]; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                V previous = (V) values[slot];
+                values[slot] = value;
+                return previous;
+            }
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        marks[slot] = 0;
+        size += 1;
+        if (size > keys.length * LOAD_FACTOR) {
+            grow();
+        }
+        return null;
+    }
+
+    /**
+     * @return the removed value, null if absent
+     */
+    @SuppressWarnings("unchecked")
+    V remove(long key) {
+        int slot = find(key);
+        if (slot < 0) {
+            return null;
+        }
+        V value = (V) values[slot];
+        removeAt(slot);
+        return value;
+    }
+
+    /**
+     * @return whether key is present(and thus marked)
+     */
+    boolean mark(long key, int generation) {
+        int slot = find(key);
+        if (slot < 0) {
+            return false;
+        }
+        marks[slot] = generation;
+        return true;
+    }
+
+    /**
+     * Remove every entry not marked with generation.
+     */
+    void retainMarked(int generation) {
+        int slot = 0;
+        while (slot < keys.length) {
+            if (null != values[slot] && marks[slot] != generation) {
+                //an entry may be shifted into this slot, check it again
+                removeAt(slot);
+            } else {
+                slot += 1;
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * Backward shift deletion, so no tombstones are needed.
+     */
+    private void removeAt(int slot) {
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (null != values[next]) {
+            int home = slotOf(keys[next]);
+            //move the entry back if its home is not within (hole, next]
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                marks[hole] = marks[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        values[hole] = null;
+        size -= 1;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        int[] oldMarks = marks;
+        allocate(keys.length << 1);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (null != oldValues[i]) {
+                int slot = slotOf(oldKeys[i]);
+                while (null != values[slot]) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+                marks[slot] = oldMarks[i];
+            }
+        }
+    }
+}
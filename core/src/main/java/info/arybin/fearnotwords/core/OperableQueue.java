@@ -0,0 +1,41 @@
+package info.arybin.fearnotwords.core;
+
+import java.util.Collection;
+import java.util.Deque;
+
+public interface OperableQueue<T> {
+
+    enum DataSource {
+        Default, Passed, Skipped
+    }
+
+
+    T current();
+
+    T pass();
+
+    T skip();
+
+    T startLoop(DataSource dataSource);
+
+    T loop();
+
+    T endLoop();
+
+    /**
+     * Append items to the tail of the Default deque, the appended items become
+     * available immediately(eg. pages loaded after the queue was built).
+     */
+    void append(Collection<? extends T> items);
+
+
+    /**
+     * @return the deque itself(or a view of it), changes made to it are changes of this queue,
+     * unless documented otherwise(eg. the Default snapshot of SpacedRepetitionQueue)
+     */
+    Deque<T> getRawDeque(DataSource dataSource);
+
+//    Deque<T> passedDeque();
+//    Deque<T> skippedDeque();
+//    Deque<T> defaultDeque();
+}
@@ -0,0 +1,93 @@
+package info.arybin.fearnotwords.core;
+
+/**
+ * SM-2 style memory state of an item: ease factor, interval(in days), successful repetitions
+ * in a row and the time the item is due again.
+ */
+public class Schedule {
+
+    public static final float DEFAULT_EASE = 2.5f;
+    public static final float MIN_EASE = 1.3f;
+
+    public static final long MINUTE = 60 * 1000L;
+    public static final long DAY = 24 * 60 * MINUTE;
+
+    /**
+     * A failed item is due again shortly, so it comes back in the same session.
+     */
+    public static final long RELEARN_DELAY = MINUTE;
+
+    private static final int QUALITY_PASS = 4;
+    private static final int QUALITY_FAIL = 1;
+
+    private float ease;
+    private int interval;
+    private int repetitions;
+    private long due;
+
+    //bumped on every change, entries of an older version in DueHeap are stale
+    int version;
+
+    /**
+     * A new item, due immediately.
+     */
+    public Schedule() {
+        this(DEFAULT_EASE, 0, 0, 0);
+    }
+
+    public Schedule(float ease, int interval, int repetitions, long due) {
+        this.ease = ease;
+        this.interval = interval;
+        this.repetitions = repetitions;
+        this.due = due;
+    }
+
+    public void pass(long now) {
+        update(QUALITY_PASS, now);
+    }
+
+    public void fail(long now) {
+        update(QUALITY_FAIL, now);
+    }
+
+    private void update(int quality, long now) {
+        if (quality < 3) {
+            repetitions = 0;
+            interval = 0;
+            due = now + RELEARN_DELAY;
+        } else {
+            if (repetitions == 0) {
+                interval = 1;
+            } else if (repetitions == 1) {
+                interval = 6;
+            } else {
+                interval = Math.round(interval * ease);
+            }
+            repetitions += 1;
+            due = now + interval * DAY;
+        }
+        ease = Math.max(MIN_EASE, ease + (0.1f - (5 - quality) * (0.08f + (5 - quality) * 0.02f)));
+        version += 1;
+    }
+
+    public float getEase() {
+        return ease;
+    }
+
+    public int getInterval() {
+        return interval;
+    }
+
+    public int getRepetitions() {
+        return repetitions;
+    }
+
+    public long getDue() {
+        return due;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ease: %.2f, interval: %d, repetitions: %d, due: %d", ease, interval, repetitions, due);
+    }
+}
@@ -0,0 +1,205 @@
+package info.arybin.fearnotwords.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Replays long learning histories against an OperableQueue without any UI.
+ * <p>
+ * Every simulated day a synthetic learner answers up to eventsPerDay cards of the queue, the queue
+ * is kept across days and built again from all cards(as the app does when a session starts) only
+ * once it has nothing left to offer. A card is recalled(pass) with
+ * probability exp(-daysSinceLastReview / stability), otherwise forgotten(skip). A recalled card
+ * becomes more stable, a forgotten one less. Everything random comes from one seeded Random,
+ * so a run is exactly reproducible.
+ * <p>
+ * eg. SessionSimulator.setupFor(10000, 42).days(365).run(SessionSimulator.SIMPLE)
+ * or from command line: SessionSimulator [cards] [days] [eventsPerDay] [seed] [simple|spaced|leitner]
+ */
+public class SessionSimulator {
+
+    public interface QueueFactory {
+        /**
+         * @param cards  all cards, in creation order
+         * @param random the seeded Random of the simulation
+         * @param clock  simulated time
+         */
+        OperableQueue<Card> build(List<Card> cards, Random random, SpacedRepetitionQueue.Clock clock);
+    }
+
+    public static final QueueFactory SIMPLE = new QueueFactory() {
+        @Override
+        public OperableQueue<Card> build(List<Card> cards, Random random, SpacedRepetitionQueue.Clock clock) {
+            return SimpleOperableQueue.buildFrom(cards, new ArrayList<Card>(), random);
+        }
+    };
+
+    public static final QueueFactory LEITNER = new QueueFactory() {
+        @Override
+        public OperableQueue<Card> build(List<Card> cards, Random random, SpacedRepetitionQueue.Clock clock) {
+            return LeitnerOperableQueue.buildFrom(cards, LeitnerOperableQueue.defaultWeights(6));
+        }
+    };
+
+    /**
+     * @return a factory of SpacedRepetitionQueues keeping Schedules in memory across days,
+     * a new one is needed for every run
+     */
+    public static QueueFactory spacedRepetition() {
+        final HashMap<Card, Schedule> stored = new HashMap<>();
+        final SpacedRepetitionQueue.ScheduleStore<Card> store = new SpacedRepetitionQueue.ScheduleStore<Card>() {
+            @Override
+            public Map<Card, Schedule> load(Collection<? extends Card> items) {
+                return stored;
+            }
+
+            @Override
+            public void save(Card item, Schedule schedule) {
+                stored.put(item, schedule);
+            }
+        };
+        return new QueueFactory() {
+            @Override
+            public OperableQueue<Card> build(List<Card> cards, Random random, SpacedRepetitionQueue.Clock clock) {
+                return SpacedRepetitionQueue.buildFrom(cards, store, clock);
+            }
+        };
+    }
+
+    /**
+     * A simulated card, with the hidden memory state of the learner.
+     */
+    public static class Card {
+        final int id;
+        double stability;
+        long lastReview = -1;
+
+        Card(int id, double stability) {
+            this.id = id;
+            this.stability = stability;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        @Override
+        public String toString() {
+            return "card" + id;
+        }
+    }
+
+    private static final double INITIAL_STABILITY = 0.5;
+    private static final double MIN_STABILITY = 0.05;
+    private static final double GROWTH = 2.2;
+    private static final double DECAY = 0.5;
+    /**
+     * Chance to already know a card never seen.
+     */
+    private static final double NEW_RECALL = 0.3;
+
+    private final int cardCount;
+    private final long seed;
+    private int days = 30;
+    private int eventsPerDay = 200;
+    private long secondsPerEvent = 8;
+
+    private SessionSimulator(int cardCount, long seed) {
+        this.cardCount = cardCount;
+        this.seed = seed;
+    }
+
+    public static SessionSimulator setupFor(int cardCount, long seed) {
+        return new SessionSimulator(cardCount, seed);
+    }
+
+    public SessionSimulator days(int days) {
+        this.days = days;
+        return this;
+    }
+
+    public SessionSimulator eventsPerDay(int eventsPerDay) {
+        this.eventsPerDay = eventsPerDay;
+        return this;
+    }
+
+    public SessionSimulator secondsPerEvent(long secondsPerEvent) {
+        this.secondsPerEvent = secondsPerEvent;
+        return this;
+    }
+
+    public SimulationReport run(QueueFactory factory) {
+        final Random random = new Random(seed);
+        final long[] now = {0};
+        SpacedRepetitionQueue.Clock clock = new SpacedRepetitionQueue.Clock() {
+            @Override
+            public long now() {
+                return now[0];
+            }
+        };
+
+        ArrayList<Card> cards = new ArrayList<>(cardCount);
+        for (int i = 0; i < cardCount; i++) {
+            cards.add(new Card(i, INITIAL_STABILITY));
+        }
+
+        SimulationReport report = new SimulationReport();
+        Runtime runtime = Runtime.getRuntime();
+        long eventMillis = secondsPerEvent * 1000;
+        long start = System.nanoTime();
+
+        OperableQueue<Card> queue = null;
+        for (int day = 0; day < days; day++) {
+            now[0] = day * Schedule.DAY;
+            if (null == queue || null == queue.current()) {
+                queue = factory.build(cards, random, clock);
+            }
+            Card card = null == queue ? null : queue.current();
+            for (int event = 0; event < eventsPerDay && null != card; event++) {
+                now[0] += eventMillis;
+                boolean recalled = answer(card, now[0], random, report);
+                card = recalled ? queue.pass() : queue.skip();
+            }
+            report.days += 1;
+            report.peakHeapBytes = Math.max(report.peakHeapBytes, runtime.totalMemory() - runtime.freeMemory());
+        }
+
+        report.wallNanos = System.nanoTime() - start;
+        return report;
+    }
+
+    private static boolean answer(Card card, long now, Random random, SimulationReport report) {
+        double recall;
+        if (card.lastReview < 0) {
+            recall = NEW_RECALL;
+        } else {
+            long waited = now - card.lastReview;
+            report.recordWait(waited);
+            recall = Math.exp(-(double) waited / Schedule.DAY / card.stability);
+        }
+        boolean recalled = random.nextDouble() < recall;
+        if (recalled) {
+            card.stability *= GROWTH;
+            report.passes += 1;
+        } else {
+            card.stability = Math.max(MIN_STABILITY, card.stability * DECAY);
+        }
+        card.lastReview = now;
+        report.events += 1;
+        return recalled;
+    }
+
+    public static void main(String[] args) {
+        int cards = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int days = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int eventsPerDay = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 42;
+        String kind = args.length > 4 ? args[4] : "simple";
+        QueueFactory factory = "spaced".equals(kind) ? spacedRepetition() : "leitner".equals(kind) ? LEITNER : SIMPLE;
+        System.out.println(setupFor(cards, seed).days(days).eventsPerDay(eventsPerDay).run(factory));
+    }
+}
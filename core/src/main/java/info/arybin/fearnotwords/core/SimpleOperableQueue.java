@@ -0,0 +1,61 @@
+package info.arybin.fearnotwords.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+
+public class SimpleOperableQueue<T> extends AbstractOperableQueue<T> {
+
+    private static Random sharedRandom = new Random();
+
+    private final Random random;
+
+
+    private SimpleOperableQueue(Collection<? extends T> source, Collection<? extends T> skipped, Random random) {
+        super(source, skipped);
+        this.random = random;
+    }
+
+    /**
+     * @param random source of the randomness of review strategy(eg. a seeded one to replay a session)
+     */
+    public static <S> SimpleOperableQueue<S> buildFrom(Collection<? extends S> source,
+                                                       Collection<? extends S> skipped,
+                                                       Random random) {
+        if (null == source || null == skipped || null == random || source.size() == 0) {
+            return null;
+        }
+        return new SimpleOperableQueue<>(source, skipped, random);
+    }
+
+    public static <S> SimpleOperableQueue<S> buildFrom(Collection<? extends S> source,
+                                                       Collection<? extends S> skipped) {
+        return buildFrom(source, skipped, sharedRandom);
+    }
+
+    public static <S> SimpleOperableQueue<S> buildFrom(Collection<? extends S> source) {
+        return buildFrom(source, new ConcurrentLinkedQueue<S>(), sharedRandom);
+    }
+
+    /**
+     * @return null if the snapshot is malformed
+     * @see AbstractOperableQueue#snapshot(IdMapper)
+     */
+    public static <S> SimpleOperableQueue<S> restoreFrom(byte[] snapshot, IdMapper<S> mapper) {
+        if (null == snapshot || null == mapper) {
+            return null;
+        }
+        SimpleOperableQueue<S> queue = new SimpleOperableQueue<>(new ArrayList<S>(), new ArrayList<S>(), sharedRandom);
+        return queue.restore(snapshot, mapper) ? queue : null;
+    }
+
+
+    @Override
+    protected boolean shouldReview(int intervalToLastReview) {
+        //Words' review strategy here
+        return getRawDeque(DataSource.Skipped).size() > 10 || intervalToLastReview > 3 || (random.nextInt(30) < 2);
+    }
+
+}
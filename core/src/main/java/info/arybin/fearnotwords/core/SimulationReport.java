@@ -0,0 +1,90 @@
+package info.arybin.fearnotwords.core;
+
+import java.util.Locale;
+
+/**
+ * Outcome of a SessionSimulator run.
+ * <p>
+ * Wait times(simulated time between two reviews of the same card) are counted in buckets
+ * whose upper bounds are WAIT_BOUNDS, the last bucket takes everything longer.
+ */
+public class SimulationReport {
+
+    public static final long[] WAIT_BOUNDS = {
+            Schedule.MINUTE,
+            10 * Schedule.MINUTE,
+            60 * Schedule.MINUTE,
+            Schedule.DAY,
+            3 * Schedule.DAY,
+            7 * Schedule.DAY,
+            30 * Schedule.DAY,
+    };
+
+    private static final String[] WAIT_LABELS = {
+            "<1m", "<10m", "<1h", "<1d", "<3d", "<7d", "<30d", ">=30d"
+    };
+
+    long events;
+    long passes;
+    int days;
+    long wallNanos;
+    long peakHeapBytes;
+    private final long[] waits = new long[WAIT_BOUNDS.length + 1];
+
+    void recordWait(long waited) {
+        int bucket = 0;
+        while (bucket < WAIT_BOUNDS.length && waited >= WAIT_BOUNDS[bucket]) {
+            bucket++;
+        }
+        waits[bucket] += 1;
+    }
+
+    public long getEvents() {
+        return events;
+    }
+
+    public long getPasses() {
+        return passes;
+    }
+
+    public int getDays() {
+        return days;
+    }
+
+    public long getWallNanos() {
+        return wallNanos;
+    }
+
+    public double getEventsPerSecond() {
+        return wallNanos == 0 ? 0 : events * 1e9 / wallNanos;
+    }
+
+    /**
+     * @return heap in use sampled at the end of every simulated day, the highest one
+     */
+    public long getPeakHeapBytes() {
+        return peakHeapBytes;
+    }
+
+    /**
+     * @return counts per bucket, see WAIT_BOUNDS
+     */
+    public long[] getWaitHistogram() {
+        return waits.clone();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format(Locale.US, "events: %d in %d days, pass rate: %.3f\n",
+                events, days, events == 0 ? 0 : (double) passes / events));
+        builder.append(String.format(Locale.US, "throughput: %.0f events/s(%.1f ms)\n",
+                getEventsPerSecond(), wallNanos / 1e6));
+        builder.append(String.format(Locale.US, "peak heap: %.1f MiB\n", peakHeapBytes / 1048576.0));
+        builder.append("wait before next review:");
+        for (int i = 0; i < waits.length; i++) {
+            builder.append(' ').append(WAIT_LABELS[i]).append('=').append(waits[i]);
+        }
+        return builder.append('\n').toString();
+    }
+}
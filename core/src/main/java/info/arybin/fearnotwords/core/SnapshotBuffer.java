@@ -0,0 +1,86 @@
+package info.arybin.fearnotwords.core;
+
+import java.util.Arrays;
+
+/**
+ * Minimal byte buffer for queue snapshots: bytes, unsigned varints and zigzag varints.
+ * Ids are written as deltas from the previous id, so ascending or clustered ids take 1~2 bytes.
+ */
+class SnapshotBuffer {
+
+    private byte[] bytes;
+    private int position = 0;
+    private int limit;
+    private long previousID = 0;
+
+    /**
+     * For writing.
+     */
+    SnapshotBuffer(int capacity) {
+        bytes = new byte[Math.max(capacity, 16)];
+        limit = bytes.length;
+    }
+
+    /**
+     * For reading.
+     */
+    SnapshotBuffer(byte[] snapshot) {
+        bytes = snapshot;
+        limit = snapshot.length;
+    }
+
+    void writeByte(int value) {
+        if (position == bytes.length) {
+            bytes = Arrays.copyOf(bytes, bytes.length << 1);
+            limit = bytes.length;
+        }
+        bytes[position++] = (byte) value;
+    }
+
+    void writeVarLong(long value) {
+        while ((value & ~0x7FL) != 0) {
+            writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        writeByte((int) value);
+    }
+
+    void writeID(long id) {
+        long delta = id - previousID;
+        previousID = id;
+        writeVarLong((delta << 1) ^ (delta >> 63));
+    }
+
+    int readByte() {
+        if (position >= limit) {
+            throw new IllegalArgumentException("truncated snapshot");
+        }
+        return bytes[position++] & 0xFF;
+    }
+
+    long readVarLong() {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("malformed varint");
+    }
+
+    long readID() {
+        long zigzag = readVarLong();
+        previousID += (zigzag >>> 1) ^ -(zigzag & 1);
+        return previousID;
+    }
+
+    boolean hasRemaining() {
+        return position < limit;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(bytes, position);
+    }
+}
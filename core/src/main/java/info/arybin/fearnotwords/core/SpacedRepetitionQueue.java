@@ -0,0 +1,259 @@
+package info.arybin.fearnotwords.core;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An OperableQueue driven by SM-2 style Schedules instead of a review strategy.
+ * <p>
+ * Every item has a Schedule(ease/interval/due), the items are kept in a binary heap keyed by
+ * due time so picking the next item is O(log n). pass() and skip() update the Schedule of the
+ * current item and hand it to the ScheduleStore for persistence.
+ * <p>
+ * Items never scheduled are new cards, they wait in a FIFO outside the heap. Due reviews and
+ * relearns are always served first, then at most newLimit new cards per queue(eg. per session),
+ * then the items due within LEARN_AHEAD. So a large backlog of unseen words never starves the
+ * words already learning.
+ * <p>
+ * The Passed/Skipped deques record what was passed/skipped in this session(they are what
+ * loops go through), the Default deque returned by getRawDeque() is a snapshot of the heap.
+ */
+public class SpacedRepetitionQueue<T> implements OperableQueue<T> {
+
+    public interface ScheduleStore<T> {
+        /**
+         * @return the stored Schedules of the items, items never scheduled may be absent
+         */
+        Map<T, Schedule> load(Collection<? extends T> items);
+
+        void save(T item, Schedule schedule);
+    }
+
+    public interface Clock {
+        long now();
+    }
+
+    /**
+     * Items due within this window are served early rather than ending the session.
+     */
+    public static final long LEARN_AHEAD = 20 * Schedule.MINUTE;
+
+    /**
+     * New cards introduced by one queue unless told otherwise.
+     */
+    public static final int DEFAULT_NEW_LIMIT = 20;
+
+    private static final Clock SYSTEM_CLOCK = new Clock() {
+        @Override
+        public long now() {
+            return System.currentTimeMillis();
+        }
+    };
+
+    private final ScheduleStore<T> store;
+    private final Clock clock;
+    private final DueHeap<T> heap;
+    private final HashMap<T, Schedule> schedules;
+    private final ArrayDeque<T> newDeque = new ArrayDeque<>();
+    private final int newLimit;
+    private int introduced = 0;
+    private final ArrayDeque<T> passedDeque = new ArrayDeque<>();
+    private final ArrayDeque<T> skippedDeque = new ArrayDeque<>();
+
+    private T current;
+
+    private boolean inLoop = false;
+    private ArrayDeque<T> loopDeque;
+    private T beforeLoop;
+
+    private SpacedRepetitionQueue(Collection<? extends T> source, ScheduleStore<T> store, Clock clock, int newLimit) {
+        this.store = store;
+        this.clock = clock;
+        this.newLimit = newLimit;
+        heap = new DueHeap<>(source.size());
+        schedules = new HashMap<>(source.size() * 2);
+        push(source);
+        next();
+    }
+
+    public static <S> SpacedRepetitionQueue<S> buildFrom(Collection<? extends S> source,
+                                                         ScheduleStore<S> store) {
+        return buildFrom(source, store, SYSTEM_CLOCK);
+    }
+
+    public static <S> SpacedRepetitionQueue<S> buildFrom(Collection<? extends S> source,
+                                                         ScheduleStore<S> store,
+                                                         Clock clock) {
+        return buildFrom(source, store, clock, DEFAULT_NEW_LIMIT);
+    }
+
+    /**
+     * @param newLimit max number of new(never scheduled) items this queue introduces
+     */
+    public static <S> SpacedRepetitionQueue<S> buildFrom(Collection<? extends S> source,
+                                                         ScheduleStore<S> store,
+                                                         Clock clock,
+                                                         int newLimit) {
+        if (null == source || null == store || null == clock || source.size() == 0 || newLimit < 0) {
+            return null;
+        }
+        return new SpacedRepetitionQueue<>(source, store, clock, newLimit);
+    }
+
+    /**
+     * Items in this queue already(scheduled, new, current or answered) are skipped, they keep
+     * their place and Schedule. Pushed again they would be served twice, eg. from the heap and as
+     * a new card while the store has not written their Schedule yet.
+     */
+    private void push(Collection<? extends T> items) {
+        ArrayList<T> added = new ArrayList<>(items.size());
+        for (T item : items) {
+            if (!schedules.containsKey(item)) {
+                added.add(item);
+            }
+        }
+        if (added.isEmpty()) {
+            return;
+        }
+        Map<T, Schedule> stored = store.load(added);
+        for (T item : added) {
+            if (schedules.containsKey(item)) {
+                //listed twice
+                continue;
+            }
+            Schedule schedule = stored.get(item);
+            if (null == schedule) {
+                //new card, only enters the heap once answered
+                schedules.put(item, new Schedule());
+                newDeque.add(item);
+            } else {
+                schedules.put(item, schedule);
+                heap.push(item, schedule);
+            }
+        }
+    }
+
+    private T next() {
+        long now = clock.now();
+        if (inLoop) {
+            current = loopDeque.poll();
+        } else if (heap.peekDue() <= now) {
+            //reviews and relearns first
+            current = heap.poll();
+        } else if (introduced < newLimit && !newDeque.isEmpty()) {
+            current = newDeque.poll();
+            introduced += 1;
+        } else if (heap.peekDue() <= now + LEARN_AHEAD) {
+            current = heap.poll();
+        } else {
+            //nothing is due, end of session
+            current = null;
+        }
+        return current;
+    }
+
+    public Schedule getSchedule(T item) {
+        return schedules.get(item);
+    }
+
+    @Override
+    public T current() {
+        return current;
+    }
+
+    @Override
+    public T pass() {
+        if (null != current) {
+            Schedule schedule = schedules.get(current);
+            schedule.pass(clock.now());
+            store.save(current, schedule);
+            heap.push(current, schedule);
+            passedDeque.add(current);
+        }
+        return next();
+    }
+
+    @Override
+    public T skip() {
+        if (null != current) {
+            Schedule schedule = schedules.get(current);
+            schedule.fail(clock.now());
+            store.save(current, schedule);
+            heap.push(current, schedule);
+            skippedDeque.add(current);
+        }
+        return next();
+    }
+
+    @Override
+    public T startLoop(DataSource dataSource) {
+        //can not loop in default queue(meaningless)
+        if (inLoop || dataSource == DataSource.Default) {
+            return current;
+        }
+        ArrayDeque<T> deque = dataSource == DataSource.Passed ? passedDeque : skippedDeque;
+        if (deque.size() == 0) {
+            return current;
+        }
+        inLoop = true;
+        loopDeque = deque;
+        beforeLoop = current;
+        return next();
+    }
+
+    @Override
+    public T loop() {
+        if (inLoop && null != current) {
+            loopDeque.add(current);
+        }
+        return next();
+    }
+
+    @Override
+    public T endLoop() {
+        if (inLoop) {
+            inLoop = false;
+            if (null != current) {
+                loopDeque.addFirst(current);
+            }
+            current = beforeLoop;
+            beforeLoop = null;
+            loopDeque = null;
+        }
+        return current;
+    }
+
+    @Override
+    public void append(Collection<? extends T> items) {
+        push(items);
+        if (null == current && !inLoop) {
+            next();
+        }
+    }
+
+    @Override
+    public Deque<T> getRawDeque(DataSource dataSource) {
+        switch (dataSource) {
+            case Passed:
+                return passedDeque;
+            case Skipped:
+                return skippedDeque;
+            case Default:
+            default:
+                ArrayDeque<T> snapshot = new ArrayDeque<>(heap.size() + newDeque.size());
+                heap.copyValidTo(snapshot);
+                snapshot.addAll(newDeque);
+                return snapshot;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("current: %s\npassedDeque: %s\nskippedDeque: %s\nscheduled: %d\nnew: %d\n",
+                current, passedDeque, skippedDeque, schedules.size(), newDeque.size());
+    }
+}
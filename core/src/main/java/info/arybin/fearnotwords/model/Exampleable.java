@@ -1,6 +1,6 @@
 package info.arybin.fearnotwords.model;
 
-interface Exampleable {
+public interface Exampleable {
     Translatable getExampleAt(int index);
 
     int getExampleCount();
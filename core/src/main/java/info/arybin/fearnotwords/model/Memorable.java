@@ -2,6 +2,8 @@ package info.arybin.fearnotwords.model;
 
 
 public interface Memorable extends Translatable, Pronounceable, Exampleable {
+    long getEntityID();
+
     void setMemoryProgress(int progress);
 
     int getMemoryProgress();
@@ -0,0 +1,186 @@
+package info.arybin.fearnotwords.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ActionHistoryTest {
+
+    private static class Recorder implements ActionHistory.OnCommitListener {
+        final List<String> committed = new ArrayList<>();
+
+        @Override
+        public void onCommitted(int op, long itemID) {
+            committed.add((op == ActionHistory.OP_PASS ? "pass" : "skip") + itemID);
+        }
+    }
+
+    private static final IdMapper<Integer> INTEGERS = new IdMapper<Integer>() {
+        @Override
+        public long idOf(Integer item) {
+            return item;
+        }
+
+        @Override
+        public Integer itemOf(long id) {
+            return (int) id;
+        }
+    };
+
+    @Test(expected = IllegalArgumentException.class)
+    public void capacityMustBePositive() throws Exception {
+        new ActionHistory(0, null);
+    }
+
+    @Test
+    public void oldestEntryIsCommittedWhenFull() throws Exception {
+        Recorder recorder = new Recorder();
+        ActionHistory history = new ActionHistory(2, recorder);
+        history.push(ActionHistory.OP_PASS, 1, 0, 0);
+        history.push(ActionHistory.OP_SKIP, 2, 0, 0);
+        assertTrue(recorder.committed.isEmpty());
+        history.push(ActionHistory.OP_PASS, 3, 0, 0);
+        assertEquals(Arrays.asList("pass1"), recorder.committed);
+        assertEquals(2, history.size());
+    }
+
+    @Test
+    public void undoRedoMoveTheCursor() throws Exception {
+        ActionHistory history = new ActionHistory(4, null);
+        assertFalse(history.canUndo());
+        assertEquals(-1, history.undo());
+        int first = history.push(ActionHistory.OP_PASS, 10, 0, 0);
+        int second = history.push(ActionHistory.OP_SKIP, 20, 2, 1);
+        history.complete(second, ActionHistory.NO_DEQUE, 5);
+
+        assertEquals(second, history.undo());
+        assertEquals(ActionHistory.OP_SKIP, history.opAt(second));
+        assertEquals(20, history.itemIDAt(second));
+        assertEquals(2, history.sourceAt(second));
+        assertEquals(ActionHistory.NO_DEQUE, history.nextSourceAt(second));
+        assertEquals(1, history.intervalBeforeAt(second));
+        assertEquals(5, history.intervalAfterAt(second));
+        assertEquals(first, history.undo());
+        assertFalse(history.canUndo());
+        assertTrue(history.canRedo());
+        assertEquals(first, history.redo());
+        assertEquals(second, history.redo());
+        assertEquals(-1, history.redo());
+    }
+
+    @Test
+    public void newActionDropsUndoneEntries() throws Exception {
+        Recorder recorder = new Recorder();
+        ActionHistory history = new ActionHistory(4, recorder);
+        history.push(ActionHistory.OP_PASS, 1, 0, 0);
+        history.push(ActionHistory.OP_PASS, 2, 0, 0);
+        history.undo();
+        history.push(ActionHistory.OP_SKIP, 3, 0, 0);
+        assertFalse(history.canRedo());
+        history.commitAll();
+        //the undone pass of 2 is never committed
+        assertEquals(Arrays.asList("pass1", "skip3"), recorder.committed);
+        assertEquals(0, history.size());
+    }
+
+    @Test
+    public void ringKeepsOrderAcrossWrapAround() throws Exception {
+        Recorder recorder = new Recorder();
+        ActionHistory history = new ActionHistory(3, recorder);
+        for (int i = 0; i < 7; i++) {
+            history.push(ActionHistory.OP_PASS, i, 0, 0);
+        }
+        assertEquals(history.getCapacity(), history.size());
+        assertEquals(6, history.itemIDAt(history.undo()));
+        assertEquals(5, history.itemIDAt(history.undo()));
+        history.redo();
+        history.commitAll();
+        assertEquals(Arrays.asList("pass0", "pass1", "pass2", "pass3", "pass4", "pass5"), recorder.committed);
+    }
+
+    /**
+     * Undo puts every item back at its exact position, redo replays the same next item.
+     */
+    @Test
+    public void queueUndoRedoRestoresExactState() throws Exception {
+        List<Integer> items = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            items.add(i);
+        }
+        Random random = new Random(42);
+        SimpleOperableQueue<Integer> queue = SimpleOperableQueue.buildFrom(items, new ArrayList<Integer>(), new Random(7));
+        Recorder recorder = new Recorder();
+        queue.enableHistory(8, INTEGERS, recorder);
+
+        List<byte[]> states = new ArrayList<>();
+        states.add(queue.snapshot(INTEGERS));
+        for (int i = 0; i < 8 && null != queue.current(); i++) {
+            if (random.nextBoolean()) {
+                queue.pass();
+            } else {
+                queue.skip();
+            }
+            states.add(queue.snapshot(INTEGERS));
+        }
+        for (int i = states.size() - 2; i >= 0; i--) {
+            assertTrue(queue.canUndo());
+            queue.undo();
+            assertArrayEquals(states.get(i), queue.snapshot(INTEGERS));
+        }
+        assertFalse(queue.canUndo());
+        for (int i = 1; i < states.size(); i++) {
+            queue.redo();
+            assertArrayEquals(states.get(i), queue.snapshot(INTEGERS));
+        }
+        assertTrue(recorder.committed.isEmpty());
+        queue.commitHistory();
+        assertEquals(states.size() - 1, recorder.committed.size());
+    }
+
+    @Test
+    public void snapshotKeepsWhatCanBeUndone() throws Exception {
+        List<Integer> items = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            items.add(i);
+        }
+        SimpleOperableQueue<Integer> queue = SimpleOperableQueue.buildFrom(items, new ArrayList<Integer>(), new Random(7));
+        queue.enableHistory(4, INTEGERS, new Recorder());
+        byte[] beforeSkip = queue.snapshot(INTEGERS);
+        queue.skip();
+        queue.pass();
+        queue.undo();
+
+        //the undone pass is dropped, the skip can still be undone after restoring
+        SimpleOperableQueue<Integer> restored = SimpleOperableQueue.restoreFrom(queue.snapshot(INTEGERS), INTEGERS);
+        assertNotNull(restored);
+        Recorder recorder = new Recorder();
+        restored.enableHistory(4, INTEGERS, recorder);
+        assertTrue(restored.canUndo());
+        assertFalse(restored.canRedo());
+        assertEquals(queue.current(), restored.current());
+        restored.pass();
+        restored.commitHistory();
+        assertEquals(Arrays.asList("skip0", "pass1"), recorder.committed);
+
+        restored = SimpleOperableQueue.restoreFrom(queue.snapshot(INTEGERS), INTEGERS);
+        restored.enableHistory(4, INTEGERS, recorder);
+        restored.undo();
+        assertArrayEquals(beforeSkip, restored.snapshot(INTEGERS));
+    }
+
+    @Test
+    public void loopsCommitTheHistory() throws Exception {
+        SimpleOperableQueue<Integer> queue = SimpleOperableQueue.buildFrom(Arrays.asList(1, 2, 3));
+        Recorder recorder = new Recorder();
+        queue.enableHistory(8, INTEGERS, recorder);
+        queue.skip();
+        queue.startLoop(OperableQueue.DataSource.Skipped);
+        assertFalse(queue.canUndo());
+        assertEquals(Arrays.asList("skip1"), recorder.committed);
+    }
+}
@@ -0,0 +1,163 @@
+package info.arybin.fearnotwords.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentOperableQueueTest {
+
+    private static final int PRODUCERS = 4;
+    private static final int ITEMS_PER_PRODUCER = 20000;
+
+    @Test
+    public void endLoopRestoresItemBeforeLoop() throws Exception {
+        ConcurrentOperableQueue<String> queue = ConcurrentOperableQueue.buildFrom(
+                Arrays.asList("a", "b", "c"), Arrays.asList("x", "y"));
+        assertEquals("a", queue.current());
+        queue.startLoop(OperableQueue.DataSource.Skipped);
+        assertEquals("x", queue.current());
+        queue.loop();
+        assertEquals("a", queue.endLoop());
+        assertEquals(Arrays.asList("b", "c"), new ArrayList<>(queue.getRawDeque(OperableQueue.DataSource.Default)));
+        assertEquals(2, queue.size(OperableQueue.DataSource.Skipped));
+    }
+
+    @Test
+    public void endLoopRemovesTheCopyAddedLast() throws Exception {
+        ConcurrentOperableQueue<String> queue = ConcurrentOperableQueue.buildFrom(
+                Arrays.asList("a"), Arrays.asList("s", "s", "u"));
+        //default runs dry, so the next item comes from skipped
+        assertEquals("s", queue.pass());
+        queue.startLoop(OperableQueue.DataSource.Passed);
+        assertEquals("a", queue.current());
+        //"s" was put back at the tail of skipped, the other "s" must keep its place
+        assertEquals("s", queue.endLoop());
+        assertEquals(Arrays.asList("s", "u"), new ArrayList<>(queue.getRawDeque(OperableQueue.DataSource.Skipped)));
+    }
+
+    @Test
+    public void emptyQueuePicksUpAppendedItems() throws Exception {
+        ConcurrentOperableQueue<String> queue = ConcurrentOperableQueue.buildFrom(new ArrayList<String>());
+        assertNull(queue.current());
+        queue.append(Arrays.asList("a"));
+        assertEquals("a", queue.current());
+        assertNull(queue.pass());
+    }
+
+    @Test
+    public void rawDequeKeepsOrderAndSize() throws Exception {
+        ConcurrentOperableQueue<String> queue = ConcurrentOperableQueue.buildFrom(Arrays.asList("a", "b"));
+        queue.append(Arrays.asList("c"));
+        queue.pass();
+        queue.pass();
+        assertEquals(Arrays.asList("a", "b"), new ArrayList<>(queue.getRawDeque(OperableQueue.DataSource.Passed)));
+        queue.getRawDeque(OperableQueue.DataSource.Passed).clear();
+        assertEquals(0, queue.size(OperableQueue.DataSource.Passed));
+        queue.append(Arrays.asList("d"));
+        assertEquals(1, queue.size(OperableQueue.DataSource.Default));
+        assertEquals("d", queue.pass());
+        assertEquals(1, queue.size(OperableQueue.DataSource.Passed));
+    }
+
+    /**
+     * Several producers append while one consumer passes/skips/loops, every item must end up
+     * passed exactly once.
+     */
+    @Test(timeout = 60000)
+    public void noItemLostOrDuplicatedUnderConcurrentAppends() throws Exception {
+        final ConcurrentOperableQueue<Integer> queue = ConcurrentOperableQueue.buildFrom(new ArrayList<Integer>());
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch produced = new CountDownLatch(PRODUCERS);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        for (int p = 0; p < PRODUCERS; p++) {
+            final int producer = p;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        Random random = new Random(producer);
+                        start.await();
+                        int next = producer * ITEMS_PER_PRODUCER;
+                        int end = next + ITEMS_PER_PRODUCER;
+                        while (next < end) {
+                            int count = Math.min(end - next, 1 + random.nextInt(50));
+                            List<Integer> page = new ArrayList<>(count);
+                            for (int i = 0; i < count; i++) {
+                                page.add(next++);
+                            }
+                            if (random.nextInt(4) == 0) {
+                                queue.appendSkipped(page);
+                            } else {
+                                queue.append(page);
+                            }
+                        }
+                    } catch (Throwable e) {
+                        failure.set(e);
+                    } finally {
+                        produced.countDown();
+                    }
+                }
+            }).start();
+        }
+
+        Random random = new Random(42);
+        start.countDown();
+        boolean inLoop = false;
+        while (produced.getCount() > 0) {
+            if (null == queue.current()) {
+                if (inLoop) {
+                    queue.endLoop();
+                    inLoop = false;
+                } else {
+                    Thread.yield();
+                }
+                continue;
+            }
+            int action = random.nextInt(20);
+            if (action < 10) {
+                queue.pass();
+            } else if (action < 17) {
+                queue.skip();
+            } else if (!inLoop) {
+                queue.startLoop(random.nextBoolean()
+                        ? OperableQueue.DataSource.Skipped : OperableQueue.DataSource.Passed);
+                inLoop = true;
+            } else if (action == 17) {
+                queue.loop();
+            } else {
+                queue.endLoop();
+                inLoop = false;
+            }
+        }
+        produced.await();
+        assertNull(failure.get());
+
+        //drain everything into the passed deque
+        queue.endLoop();
+        while (null != queue.current()) {
+            queue.pass();
+        }
+
+        int total = PRODUCERS * ITEMS_PER_PRODUCER;
+        assertEquals(0, queue.size(OperableQueue.DataSource.Default));
+        assertEquals(0, queue.size(OperableQueue.DataSource.Skipped));
+        assertEquals(total, queue.size(OperableQueue.DataSource.Passed));
+        assertTrue(queue.getRawDeque(OperableQueue.DataSource.Default).isEmpty());
+        assertTrue(queue.getRawDeque(OperableQueue.DataSource.Skipped).isEmpty());
+
+        HashSet<Integer> seen = new HashSet<>(total * 2);
+        for (Integer item : queue.getRawDeque(OperableQueue.DataSource.Passed)) {
+            assertTrue("duplicated " + item, seen.add(item));
+        }
+        assertEquals(total, seen.size());
+    }
+}
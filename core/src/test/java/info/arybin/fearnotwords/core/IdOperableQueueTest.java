@@ -0,0 +1,250 @@
+package info.arybin.fearnotwords.core;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+public class IdOperableQueueTest {
+
+    private static final String PLACEHOLDER = "?";
+
+    /**
+     * Items are "item[id]", hydration requests are counted.
+     */
+    private static class CountingHydrator implements IdOperableQueue.Hydrator<String> {
+        int hydrated = 0;
+
+        @Override
+        public long idOf(String item) {
+            return Long.parseLong(item.substring(4));
+        }
+
+        @Override
+        public List<String> hydrate(long[] ids) {
+            hydrated += ids.length;
+            ArrayList<String> items = new ArrayList<>(ids.length);
+            for (long id : ids) {
+                items.add("item" + id);
+            }
+            return items;
+        }
+
+        @Override
+        public String placeholderOf(long id) {
+            return PLACEHOLDER;
+        }
+    }
+
+    /**
+     * Runs tasks only when told to.
+     */
+    private static class ManualExecutor implements Executor {
+        final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable task) {
+            tasks.add(task);
+        }
+
+        void runAll() {
+            while (!tasks.isEmpty()) {
+                tasks.poll().run();
+            }
+        }
+    }
+
+    private static long[] range(int count) {
+        long[] ids = new long[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = i;
+        }
+        return ids;
+    }
+
+    @Test
+    public void currentIsPlaceholderUntilHydrated() throws Exception {
+        CountingHydrator hydrator = new CountingHydrator();
+        ManualExecutor executor = new ManualExecutor();
+        IdOperableQueue<String> queue = IdOperableQueue.buildFrom(range(100), hydrator, executor, 4);
+        final ArrayList<String> notified = new ArrayList<>();
+        queue.setOnHydratedListener(new IdOperableQueue.OnHydratedListener<String>() {
+            @Override
+            public void onHydrated(String item) {
+                notified.add(item);
+            }
+
+            @Override
+            public void onHydrationFailed(long[] ids, Exception e) {
+                fail();
+            }
+        });
+
+        assertEquals(PLACEHOLDER, queue.current());
+        assertFalse(queue.isCurrentHydrated());
+        //nothing was hydrated in this thread
+        assertEquals(0, hydrator.hydrated);
+
+        executor.runAll();
+        assertEquals("item0", queue.current());
+        assertTrue(queue.isCurrentHydrated());
+        assertEquals(Arrays.asList("item0"), notified);
+    }
+
+    @Test
+    public void windowStaysBounded() throws Exception {
+        CountingHydrator hydrator = new CountingHydrator();
+        ManualExecutor executor = new ManualExecutor();
+        IdOperableQueue<String> queue = IdOperableQueue.buildFrom(range(10000), hydrator, executor, 4);
+        Random random = new Random(42);
+        for (int i = 0; i < 5000; i++) {
+            executor.runAll();
+            assertTrue(queue.isCurrentHydrated());
+            if (random.nextBoolean()) {
+                queue.pass();
+            } else {
+                queue.skip();
+            }
+            //current, before loop and the heads of default and skipped deques
+            assertTrue(queue.getWindowCount() <= 4 * 2 + 2);
+        }
+        executor.runAll();
+        //every id was hydrated about once, not once per move
+        assertTrue("hydrated " + hydrator.hydrated, hydrator.hydrated < 5000 * 2);
+    }
+
+    @Test
+    public void failedHydrationIsRetried() throws Exception {
+        final boolean[] fail = {true};
+        CountingHydrator hydrator = new CountingHydrator() {
+            @Override
+            public List<String> hydrate(long[] ids) {
+                if (fail[0]) {
+                    throw new IllegalStateException("storage not ready");
+                }
+                return super.hydrate(ids);
+            }
+        };
+        ManualExecutor executor = new ManualExecutor();
+        IdOperableQueue<String> queue = IdOperableQueue.buildFrom(range(10), hydrator, executor, 2);
+        final ArrayList<Exception> failures = new ArrayList<>();
+        queue.setOnHydratedListener(new IdOperableQueue.OnHydratedListener<String>() {
+            @Override
+            public void onHydrated(String item) {
+            }
+
+            @Override
+            public void onHydrationFailed(long[] ids, Exception e) {
+                failures.add(e);
+            }
+        });
+        executor.runAll();
+        assertEquals(1, failures.size());
+        assertEquals(PLACEHOLDER, queue.current());
+
+        fail[0] = false;
+        executor.runAll();
+        assertEquals("item0", queue.current());
+        assertEquals(1, failures.size());
+    }
+
+    @Test
+    public void rawDequeHydratesOnlyWhatIsRead() throws Exception {
+        CountingHydrator hydrator = new CountingHydrator();
+        ManualExecutor executor = new ManualExecutor();
+        IdOperableQueue<String> queue = IdOperableQueue.buildFrom(range(1000), hydrator, executor, 4);
+        executor.runAll();
+        int before = hydrator.hydrated;
+
+        Deque<String> deque = queue.getRawDeque(OperableQueue.DataSource.Default);
+        assertEquals(999, deque.size());
+        assertEquals(before, hydrator.hydrated);
+        //the head is in the window already
+        assertEquals("item1", deque.peekFirst());
+        assertEquals(before, hydrator.hydrated);
+        assertEquals("item999", deque.peekLast());
+        assertTrue(hydrator.hydrated - before <= 4);
+
+        ArrayList<String> all = new ArrayList<>(deque);
+        assertEquals(999, all.size());
+        assertEquals("item1", all.get(0));
+        assertEquals("item999", all.get(998));
+    }
+
+    @Test
+    public void rawDequeWritesThrough() throws Exception {
+        CountingHydrator hydrator = new CountingHydrator();
+        ManualExecutor executor = new ManualExecutor();
+        IdOperableQueue<String> queue = IdOperableQueue.buildFrom(range(10), hydrator, executor, 4);
+        executor.runAll();
+
+        Deque<String> deque = queue.getRawDeque(OperableQueue.DataSource.Default);
+        assertEquals("item1", deque.poll());
+        assertEquals("item9", deque.pollLast());
+        deque.addFirst("item42");
+        assertTrue(deque.remove("item5"));
+        assertFalse(deque.remove("item5"));
+        assertArrayEquals(new long[]{42, 2, 3, 4, 6, 7, 8}, queue.getRawIDs(OperableQueue.DataSource.Default).toArray());
+
+        executor.runAll();
+        assertEquals("item42", queue.pass());
+        queue.getRawDeque(OperableQueue.DataSource.Passed).clear();
+        assertTrue(queue.getRawIDs(OperableQueue.DataSource.Passed).isEmpty());
+    }
+
+    @Test
+    public void rawDequeRefillsExhaustedQueue() throws Exception {
+        CountingHydrator hydrator = new CountingHydrator();
+        ManualExecutor executor = new ManualExecutor();
+        IdOperableQueue<String> queue = IdOperableQueue.buildFrom(range(1), hydrator, executor, 4);
+        assertNull(queue.pass());
+        queue.getRawDeque(OperableQueue.DataSource.Default).add("item7");
+        executor.runAll();
+        assertEquals("item7", queue.current());
+    }
+
+    @Test
+    public void longObjectMapMatchesHashMap() throws Exception {
+        Random random = new Random(42);
+        LongObjectMap<String> map = new LongObjectMap<>(4);
+        HashMap<Long, String> expected = new HashMap<>();
+        int generation = 0;
+        for (int i = 0; i < 50000; i++) {
+            long key = random.nextInt(64) * 1024L;
+            switch (random.nextInt(4)) {
+                case 0:
+                case 1:
+                    assertEquals(expected.put(key, "v" + i), map.put(key, "v" + i));
+                    break;
+                case 2:
+                    assertEquals(expected.remove(key), map.remove(key));
+                    break;
+                default:
+                    //keep about half of the keys
+                    generation += 1;
+                    for (Long each : new ArrayList<>(expected.keySet())) {
+                        if (random.nextBoolean()) {
+                            assertTrue(map.mark(each, generation));
+                        } else {
+                            expected.remove(each);
+                        }
+                    }
+                    map.retainMarked(generation);
+                    break;
+            }
+            assertEquals(expected.size(), map.size());
+            assertEquals(expected.get(key), map.get(key));
+        }
+        for (Long key : expected.keySet()) {
+            assertEquals(expected.get(key), map.get(key));
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package info.arybin.fearnotwords.core;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class IndexedDequeTest {
+
+    @Test
+    public void behavesLikeDequeAtBothEnds() throws Exception {
+        IndexedDeque<String> deque = new IndexedDeque<>(Arrays.asList("b", "c"));
+        deque.addFirst("a");
+        deque.addLast("d");
+        assertEquals(4, deque.size());
+        assertEquals("a", deque.peekFirst());
+        assertEquals("d", deque.peekLast());
+        assertEquals("a", deque.pollFirst());
+        assertEquals("d", deque.pollLast());
+        assertEquals(Arrays.asList("b", "c"), new ArrayList<>(deque));
+        assertTrue(deque.contains("b"));
+        assertFalse(deque.contains("a"));
+        assertFalse(deque.contains(null));
+    }
+
+    @Test
+    public void emptyDequeFollowsDequeContract() throws Exception {
+        IndexedDeque<String> deque = new IndexedDeque<>();
+        assertNull(deque.pollFirst());
+        assertNull(deque.peekLast());
+        assertFalse(deque.remove("a"));
+        try {
+            deque.removeFirst();
+            fail();
+        } catch (NoSuchElementException expected) {
+        }
+        try {
+            deque.add(null);
+            fail();
+        } catch (NullPointerException expected) {
+        }
+    }
+
+    @Test
+    public void removesFirstAndLastOccurrenceOfDuplicates() throws Exception {
+        IndexedDeque<String> deque = new IndexedDeque<>(Arrays.asList("a", "x", "b", "x", "c", "x"));
+        deque.addFirst("x");
+        assertTrue(deque.removeFirstOccurrence("x"));
+        assertEquals(Arrays.asList("a", "x", "b", "x", "c", "x"), new ArrayList<>(deque));
+        assertTrue(deque.removeLastOccurrence("x"));
+        assertEquals(Arrays.asList("a", "x", "b", "x", "c"), new ArrayList<>(deque));
+        assertTrue(deque.removeFirstOccurrence("x"));
+        assertEquals(Arrays.asList("a", "b", "x", "c"), new ArrayList<>(deque));
+        assertTrue(deque.remove("x"));
+        assertFalse(deque.contains("x"));
+        assertFalse(deque.remove("x"));
+    }
+
+    @Test
+    public void iteratorRemovesAndDetectsModification() throws Exception {
+        IndexedDeque<String> deque = new IndexedDeque<>(Arrays.asList("a", "b", "a"));
+        Iterator<String> iterator = deque.descendingIterator();
+        assertEquals("a", iterator.next());
+        iterator.remove();
+        assertEquals(Arrays.asList("a", "b"), new ArrayList<>(deque));
+        assertTrue(deque.contains("a"));
+
+        iterator = deque.iterator();
+        iterator.next();
+        deque.add("c");
+        try {
+            iterator.next();
+            fail();
+        } catch (ConcurrentModificationException expected) {
+        }
+    }
+
+    @Test
+    public void matchesArrayDequeUnderRandomOperations() throws Exception {
+        Random random = new Random(42);
+        IndexedDeque<Integer> deque = new IndexedDeque<>();
+        ArrayDeque<Integer> expected = new ArrayDeque<>();
+        for (int i = 0; i < 20000; i++) {
+            //few distinct values, so most items are duplicates
+            Integer item = random.nextInt(8);
+            switch (random.nextInt(6)) {
+                case 0:
+                    deque.addFirst(item);
+                    expected.addFirst(item);
+                    break;
+                case 1:
+                    deque.addLast(item);
+                    expected.addLast(item);
+                    break;
+                case 2:
+                    assertEquals(expected.pollFirst(), deque.pollFirst());
+                    break;
+                case 3:
+                    assertEquals(expected.pollLast(), deque.pollLast());
+                    break;
+                case 4:
+                    assertEquals(expected.removeFirstOccurrence(item), deque.removeFirstOccurrence(item));
+                    break;
+                default:
+                    assertEquals(expected.removeLastOccurrence(item), deque.removeLastOccurrence(item));
+                    break;
+            }
+            assertEquals(expected.size(), deque.size());
+            assertEquals(expected.contains(item), deque.contains(item));
+        }
+        assertEquals(new ArrayList<>(expected), new ArrayList<>(deque));
+    }
+}
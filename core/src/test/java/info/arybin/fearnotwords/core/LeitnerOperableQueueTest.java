@@ -0,0 +1,118 @@
+package info.arybin.fearnotwords.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LeitnerOperableQueueTest {
+
+    private static List<Integer> range(int from, int to) {
+        List<Integer> items = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            items.add(i);
+        }
+        return items;
+    }
+
+    @Test
+    public void buildFromRejectsInvalidWeights() throws Exception {
+        assertNull(LeitnerOperableQueue.buildFrom(range(0, 3), new int[]{1, 1}));
+        assertNull(LeitnerOperableQueue.buildFrom(range(0, 3), new int[]{1, -1, 1}));
+        assertNull(LeitnerOperableQueue.buildFrom(null, new int[]{1, 1, 1}));
+        assertNotNull(LeitnerOperableQueue.buildFrom(range(0, 3), new int[]{1, 0, 1}));
+    }
+
+    @Test
+    public void defaultWeights() throws Exception {
+        assertArrayEquals(new int[]{4, 8, 4, 2, 1, 1}, LeitnerOperableQueue.defaultWeights(6));
+        assertEquals(LeitnerOperableQueue.MIN_BOX_COUNT, LeitnerOperableQueue.defaultWeights(1).length);
+    }
+
+    @Test
+    public void passMovesUpSkipMovesBack() throws Exception {
+        LeitnerOperableQueue<String> queue = LeitnerOperableQueue.buildFrom(
+                Arrays.asList("a"), LeitnerOperableQueue.defaultWeights(4));
+        assertEquals(LeitnerOperableQueue.BOX_NEW, queue.getCurrentBox());
+        assertEquals("a", queue.pass());
+        assertEquals(2, queue.getCurrentBox());
+        queue.pass();
+        assertEquals(3, queue.getCurrentBox());
+        //the last box keeps its items
+        queue.pass();
+        assertEquals(3, queue.getCurrentBox());
+        queue.skip();
+        assertEquals(LeitnerOperableQueue.BOX_SKIPPED, queue.getCurrentBox());
+        //a skipped item goes to the first passed box
+        queue.pass();
+        assertEquals(2, queue.getCurrentBox());
+    }
+
+    @Test
+    public void picksBoxesByWeight() throws Exception {
+        int[] weights = {2, 4, 1};
+        LeitnerOperableQueue<Integer> queue = LeitnerOperableQueue.buildFrom(range(0, 1000), weights);
+        queue.appendTo(1, range(1000, 2000));
+        queue.appendTo(2, range(2000, 3000));
+        int[] picks = new int[weights.length];
+        for (int i = 0; i < 700; i++) {
+            picks[queue.getCurrentBox()] += 1;
+            //a skipped item goes back to its own box 1, a passed one of box 2 stays there
+            if (queue.getCurrentBox() == LeitnerOperableQueue.BOX_NEW) {
+                queue.pass();
+            } else if (queue.getCurrentBox() == 1) {
+                queue.skip();
+            } else {
+                queue.pass();
+            }
+        }
+        assertEquals(200, picks[0], 2);
+        assertEquals(400, picks[1], 2);
+        assertEquals(100, picks[2], 2);
+    }
+
+    @Test
+    public void emptyBoxesAreNotPicked() throws Exception {
+        LeitnerOperableQueue<Integer> queue = LeitnerOperableQueue.buildFrom(range(0, 3), new int[]{1, 100, 100});
+        assertEquals(Integer.valueOf(0), queue.current());
+        //box 2 holds 0 now and outweighs box 0, box 1 is empty however heavy it is
+        assertEquals(Integer.valueOf(0), queue.pass());
+        assertEquals(2, queue.getCurrentBox());
+        for (int i = 0; i < 5; i++) {
+            queue.pass();
+            assertNotEquals(LeitnerOperableQueue.BOX_SKIPPED, queue.getCurrentBox());
+        }
+    }
+
+    @Test
+    public void loopThroughBoxAndBack() throws Exception {
+        LeitnerOperableQueue<String> queue = LeitnerOperableQueue.buildFrom(
+                Arrays.asList("a", "b", "c"), new int[]{1, 0, 0});
+        queue.skip();
+        queue.skip();
+        assertEquals("c", queue.current());
+        assertEquals("a", queue.startLoop(OperableQueue.DataSource.Skipped));
+        assertEquals("b", queue.loop());
+        assertEquals("a", queue.loop());
+        assertEquals("c", queue.endLoop());
+        assertEquals(LeitnerOperableQueue.BOX_NEW, queue.getCurrentBox());
+        //the item current when the loop ended goes back to the head
+        assertEquals(Arrays.asList("a", "b"), new ArrayList<>(queue.getRawDeque(OperableQueue.DataSource.Skipped)));
+        assertTrue(queue.getBox(LeitnerOperableQueue.BOX_NEW).isEmpty());
+    }
+
+    @Test
+    public void endLoopPicksNextWhenItemBeforeLoopWasAnswered() throws Exception {
+        LeitnerOperableQueue<String> queue = LeitnerOperableQueue.buildFrom(
+                Arrays.asList("a", "b", "c"), new int[]{1, 0, 0});
+        //loop the box the current item came from
+        assertEquals("a", queue.startLoop(LeitnerOperableQueue.BOX_NEW));
+        assertEquals("b", queue.pass());
+        assertEquals("b", queue.endLoop());
+        assertTrue(queue.getBox(2).contains("a"));
+        assertEquals(Arrays.asList("c"), new ArrayList<>(queue.getBox(LeitnerOperableQueue.BOX_NEW)));
+    }
+}
@@ -0,0 +1,115 @@
+package info.arybin.fearnotwords.core;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LongDequeTest {
+
+    private static long[] toArray(ArrayDeque<Long> deque) {
+        long[] result = new long[deque.size()];
+        int i = 0;
+        for (Long value : deque) {
+            result[i++] = value;
+        }
+        return result;
+    }
+
+    @Test
+    public void wrapsAroundAndGrows() throws Exception {
+        LongDeque deque = new LongDeque(2);
+        deque.add(2);
+        deque.addFirst(1);
+        deque.addFirst(0);
+        deque.addAll(new long[]{3, 4, 5});
+        assertEquals(6, deque.size());
+        assertArrayEquals(new long[]{0, 1, 2, 3, 4, 5}, deque.toArray());
+        assertEquals(0, deque.peek());
+        assertEquals(5, deque.get(5));
+        assertEquals(0, deque.poll());
+        assertEquals(1, deque.poll());
+        assertEquals(3, deque.indexOf(5));
+    }
+
+    @Test
+    public void emptyDequeThrows() throws Exception {
+        LongDeque deque = new LongDeque(new long[]{7});
+        assertEquals(7, deque.poll());
+        assertTrue(deque.isEmpty());
+        try {
+            deque.poll();
+            fail();
+        } catch (NoSuchElementException expected) {
+        }
+        try {
+            deque.peek();
+            fail();
+        } catch (NoSuchElementException expected) {
+        }
+        try {
+            deque.get(0);
+            fail();
+        } catch (IndexOutOfBoundsException expected) {
+        }
+    }
+
+    @Test
+    public void removesFirstAndLastOccurrence() throws Exception {
+        LongDeque deque = new LongDeque(new long[]{1, 9, 2, 9, 3});
+        assertTrue(deque.removeFirstOccurrence(9));
+        assertArrayEquals(new long[]{1, 2, 9, 3}, deque.toArray());
+        deque.add(9);
+        assertTrue(deque.removeLastOccurrence(9));
+        assertArrayEquals(new long[]{1, 2, 9, 3}, deque.toArray());
+        assertFalse(deque.removeFirstOccurrence(42));
+        assertFalse(deque.contains(42));
+    }
+
+    @Test
+    public void matchesArrayDequeUnderRandomOperations() throws Exception {
+        Random random = new Random(42);
+        LongDeque deque = new LongDeque(2);
+        ArrayDeque<Long> expected = new ArrayDeque<>();
+        for (int i = 0; i < 20000; i++) {
+            long value = random.nextInt(16);
+            switch (random.nextInt(6)) {
+                case 0:
+                    deque.add(value);
+                    expected.add(value);
+                    break;
+                case 1:
+                    deque.addFirst(value);
+                    expected.addFirst(value);
+                    break;
+                case 2:
+                    if (!expected.isEmpty()) {
+                        assertEquals((long) expected.poll(), deque.poll());
+                    }
+                    break;
+                case 3:
+                    assertEquals(expected.removeFirstOccurrence(value), deque.removeFirstOccurrence(value));
+                    break;
+                case 4:
+                    assertEquals(expected.removeLastOccurrence(value), deque.removeLastOccurrence(value));
+                    break;
+                default:
+                    if (random.nextInt(50) == 0) {
+                        deque.clear();
+                        expected.clear();
+                    }
+                    break;
+            }
+            assertEquals(expected.size(), deque.size());
+            if (!expected.isEmpty()) {
+                int index = random.nextInt(expected.size());
+                assertEquals((long) new ArrayList<>(expected).get(index), deque.get(index));
+            }
+        }
+        assertArrayEquals(toArray(expected), deque.toArray());
+    }
+}
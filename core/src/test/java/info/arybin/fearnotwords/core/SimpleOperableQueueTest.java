@@ -0,0 +1,180 @@
+package info.arybin.fearnotwords.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SimpleOperableQueueTest {
+
+    /**
+     * Never triggers the random review of the strategy, so orders are predictable.
+     */
+    private static Random noRandomReview() {
+        return new Random() {
+            @Override
+            public int nextInt(int bound) {
+                return bound - 1;
+            }
+        };
+    }
+
+    private static SimpleOperableQueue<String> queueOf(String... items) {
+        return SimpleOperableQueue.buildFrom(Arrays.asList(items), new ArrayList<String>(), noRandomReview());
+    }
+
+    private static final IdMapper<String> NUMBERS = new IdMapper<String>() {
+        @Override
+        public long idOf(String item) {
+            return Long.parseLong(item);
+        }
+
+        @Override
+        public String itemOf(long id) {
+            return String.valueOf(id);
+        }
+    };
+
+    private static List<String> contentOf(OperableQueue<String> queue, OperableQueue.DataSource dataSource) {
+        return new ArrayList<>(queue.getRawDeque(dataSource));
+    }
+
+    @Test
+    public void buildFromRejectsEmptySource() throws Exception {
+        assertNull(SimpleOperableQueue.buildFrom(Collections.<String>emptyList()));
+        assertNull(SimpleOperableQueue.buildFrom(null));
+    }
+
+    @Test
+    public void passesEveryItemInOrder() throws Exception {
+        SimpleOperableQueue<String> queue = queueOf("a", "b", "c");
+        assertEquals("a", queue.current());
+        assertEquals("b", queue.pass());
+        assertEquals("c", queue.pass());
+        assertNull(queue.pass());
+        assertNull(queue.current());
+        assertEquals(Arrays.asList("a", "b", "c"), contentOf(queue, OperableQueue.DataSource.Passed));
+    }
+
+    @Test
+    public void skippedItemsComeBackWhenDefaultRunsDry() throws Exception {
+        SimpleOperableQueue<String> queue = queueOf("a", "b");
+        assertEquals("b", queue.skip());
+        assertEquals("a", queue.pass());
+        assertNull(queue.pass());
+        assertEquals(Arrays.asList("b", "a"), contentOf(queue, OperableQueue.DataSource.Passed));
+        assertTrue(queue.getRawDeque(OperableQueue.DataSource.Skipped).isEmpty());
+    }
+
+    @Test
+    public void reviewsSkippedItemAfterInterval() throws Exception {
+        SimpleOperableQueue<String> queue = queueOf("0", "1", "2", "3", "4", "5", "6");
+        assertEquals("1", queue.skip());
+        assertEquals("2", queue.pass());
+        assertEquals("3", queue.pass());
+        assertEquals("4", queue.pass());
+        //intervalToLastReview > 3
+        assertEquals("0", queue.pass());
+        assertEquals("5", queue.pass());
+    }
+
+    @Test
+    public void reviewsWhenTooManySkipped() throws Exception {
+        String[] skipped = new String[11];
+        for (int i = 0; i < skipped.length; i++) {
+            skipped[i] = String.valueOf(i);
+        }
+        SimpleOperableQueue<String> queue = SimpleOperableQueue.buildFrom(
+                Arrays.asList("x", "y"), Arrays.asList(skipped), noRandomReview());
+        assertEquals("x", queue.current());
+        //more than 10 skipped items force a review, whatever the interval
+        assertEquals("0", queue.pass());
+    }
+
+    @Test
+    public void loopGoesThroughSkippedAndEndLoopRestoresCurrent() throws Exception {
+        SimpleOperableQueue<String> queue = queueOf("a", "b", "c", "d");
+        queue.skip();
+        assertEquals("c", queue.skip());
+        assertEquals(Arrays.asList("a", "b"), contentOf(queue, OperableQueue.DataSource.Skipped));
+
+        assertEquals("a", queue.startLoop(OperableQueue.DataSource.Skipped));
+        assertTrue(queue.isInLoop());
+        assertEquals("b", queue.loop());
+        assertEquals("a", queue.loop());
+        assertEquals("b", queue.loop());
+
+        assertEquals("c", queue.endLoop());
+        assertFalse(queue.isInLoop());
+        assertEquals(Arrays.asList("d"), contentOf(queue, OperableQueue.DataSource.Default));
+        assertEquals(Arrays.asList("a", "b"), contentOf(queue, OperableQueue.DataSource.Skipped));
+        assertEquals("d", queue.pass());
+    }
+
+    @Test
+    public void endLoopKeepsItemAnsweredInLoop() throws Exception {
+        SimpleOperableQueue<String> queue = queueOf("a", "b", "c");
+        queue.pass();
+        assertEquals("b", queue.current());
+        assertEquals("a", queue.startLoop(OperableQueue.DataSource.Passed));
+        queue.loop();
+        assertEquals("b", queue.endLoop());
+        assertEquals(Arrays.asList("a"), contentOf(queue, OperableQueue.DataSource.Passed));
+        assertEquals(Arrays.asList("c"), contentOf(queue, OperableQueue.DataSource.Default));
+    }
+
+    @Test
+    public void appendRevivesExhaustedQueue() throws Exception {
+        SimpleOperableQueue<String> queue = queueOf("a");
+        assertNull(queue.pass());
+        queue.append(Arrays.asList("b", "c"));
+        assertEquals("b", queue.current());
+        assertEquals("c", queue.pass());
+    }
+
+    @Test
+    public void snapshotRestoresTheWholeState() throws Exception {
+        SimpleOperableQueue<String> queue = queueOf("1", "2", "3", "4", "5");
+        queue.skip();
+        queue.pass();
+        queue.startLoop(OperableQueue.DataSource.Skipped);
+        byte[] snapshot = queue.snapshot(NUMBERS);
+
+        SimpleOperableQueue<String> restored = SimpleOperableQueue.restoreFrom(snapshot, NUMBERS);
+        assertNotNull(restored);
+        assertTrue(restored.isInLoop());
+        assertEquals(queue.current(), restored.current());
+        for (OperableQueue.DataSource dataSource : OperableQueue.DataSource.values()) {
+            assertEquals(contentOf(queue, dataSource), contentOf(restored, dataSource));
+        }
+        assertEquals(queue.endLoop(), restored.endLoop());
+        assertArrayEquals(queue.snapshot(NUMBERS), restored.snapshot(NUMBERS));
+    }
+
+    @Test
+    public void malformedSnapshotsAreRejected() throws Exception {
+        SimpleOperableQueue<String> queue = queueOf("1", "2", "3");
+        queue.skip();
+        queue.startLoop(OperableQueue.DataSource.Skipped);
+        byte[] snapshot = queue.snapshot(NUMBERS);
+        assertNotNull(SimpleOperableQueue.restoreFrom(snapshot, NUMBERS));
+
+        //version, flags, interval, last deque, loop deque, deque before loop
+        byte[] noLoopDeque = snapshot.clone();
+        noLoopDeque[4] = (byte) 0xFF;
+        assertNull(SimpleOperableQueue.restoreFrom(noLoopDeque, NUMBERS));
+        byte[] noDequeBeforeLoop = snapshot.clone();
+        noDequeBeforeLoop[5] = (byte) 0xFF;
+        assertNull(SimpleOperableQueue.restoreFrom(noDequeBeforeLoop, NUMBERS));
+        byte[] badLastDeque = snapshot.clone();
+        badLastDeque[3] = 3;
+        assertNull(SimpleOperableQueue.restoreFrom(badLastDeque, NUMBERS));
+        assertNull(SimpleOperableQueue.restoreFrom(Arrays.copyOf(snapshot, snapshot.length - 1), NUMBERS));
+        assertNull(SimpleOperableQueue.restoreFrom(new byte[]{42}, NUMBERS));
+    }
+}
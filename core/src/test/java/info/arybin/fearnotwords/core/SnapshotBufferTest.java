@@ -0,0 +1,90 @@
+package info.arybin.fearnotwords.core;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class SnapshotBufferTest {
+
+    private static final long[] VALUES = {
+            0, 1, 127, 128, 16383, 16384, 1L << 35, Long.MAX_VALUE, -1, Long.MIN_VALUE
+    };
+
+    @Test
+    public void varLongRoundTrips() throws Exception {
+        SnapshotBuffer writer = new SnapshotBuffer(1);
+        for (long value : VALUES) {
+            writer.writeVarLong(value);
+        }
+        SnapshotBuffer reader = new SnapshotBuffer(writer.toByteArray());
+        for (long value : VALUES) {
+            assertEquals(value, reader.readVarLong());
+        }
+        assertFalse(reader.hasRemaining());
+    }
+
+    @Test
+    public void varLongSizes() throws Exception {
+        assertEquals(1, sizeOf(0));
+        assertEquals(1, sizeOf(127));
+        assertEquals(2, sizeOf(128));
+        assertEquals(2, sizeOf(16383));
+        assertEquals(3, sizeOf(16384));
+        //negative values are never zigzagged by writeVarLong
+        assertEquals(10, sizeOf(-1));
+    }
+
+    private static int sizeOf(long value) {
+        SnapshotBuffer buffer = new SnapshotBuffer(16);
+        buffer.writeVarLong(value);
+        return buffer.toByteArray().length;
+    }
+
+    @Test
+    public void idDeltasRoundTrip() throws Exception {
+        long[] ids = {5, 6, 7, 3, 1000000, 999999, 0, Long.MAX_VALUE, Long.MIN_VALUE, -42, 42};
+        SnapshotBuffer writer = new SnapshotBuffer(16);
+        for (long id : ids) {
+            writer.writeID(id);
+        }
+        SnapshotBuffer reader = new SnapshotBuffer(writer.toByteArray());
+        for (long id : ids) {
+            assertEquals(id, reader.readID());
+        }
+        assertFalse(reader.hasRemaining());
+    }
+
+    @Test
+    public void clusteredIdsTakeOneByte() throws Exception {
+        SnapshotBuffer writer = new SnapshotBuffer(16);
+        for (long id = 100000; id < 101000; id++) {
+            writer.writeID(id);
+        }
+        //the first delta is large, every other one is 1
+        assertEquals(3 + 999, writer.toByteArray().length);
+    }
+
+    @Test
+    public void bytesAreUnsigned() throws Exception {
+        SnapshotBuffer writer = new SnapshotBuffer(16);
+        writer.writeByte(0xFF);
+        writer.writeByte(0);
+        SnapshotBuffer reader = new SnapshotBuffer(writer.toByteArray());
+        assertEquals(0xFF, reader.readByte());
+        assertEquals(0, reader.readByte());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void truncatedVarLongIsRejected() throws Exception {
+        new SnapshotBuffer(new byte[]{(byte) 0x80, (byte) 0x80}).readVarLong();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void overlongVarLongIsRejected() throws Exception {
+        byte[] bytes = new byte[11];
+        Arrays.fill(bytes, (byte) 0xFF);
+        new SnapshotBuffer(bytes).readVarLong();
+    }
+}
@@ -0,0 +1,129 @@
+package info.arybin.fearnotwords.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class SpacedRepetitionQueueTest {
+
+    private static class MapStore implements SpacedRepetitionQueue.ScheduleStore<String> {
+        final HashMap<String, Schedule> stored = new HashMap<>();
+
+        @Override
+        public Map<String, Schedule> load(Collection<? extends String> items) {
+            return stored;
+        }
+
+        @Override
+        public void save(String item, Schedule schedule) {
+            stored.put(item, schedule);
+        }
+    }
+
+    private static class FixedClock implements SpacedRepetitionQueue.Clock {
+        long now;
+
+        @Override
+        public long now() {
+            return now;
+        }
+    }
+
+    @Test
+    public void dueReviewsComeBeforeNewCards() throws Exception {
+        MapStore store = new MapStore();
+        FixedClock clock = new FixedClock();
+        Schedule review = new Schedule();
+        review.fail(0);
+        store.stored.put("review", review);
+        clock.now = Schedule.DAY;
+
+        SpacedRepetitionQueue<String> queue = SpacedRepetitionQueue.buildFrom(
+                Arrays.asList("new0", "new1", "review"), store, clock);
+        assertEquals("review", queue.current());
+        assertEquals("new0", queue.pass());
+        assertEquals("new1", queue.pass());
+    }
+
+    @Test
+    public void newCardsAreLimitedPerQueue() throws Exception {
+        MapStore store = new MapStore();
+        FixedClock clock = new FixedClock();
+        SpacedRepetitionQueue<String> queue = SpacedRepetitionQueue.buildFrom(
+                Arrays.asList("a", "b", "c", "d"), store, clock, 2);
+        assertEquals("a", queue.current());
+        assertEquals("b", queue.pass());
+        //both passed cards are due days later, the limit ends the session
+        assertNull(queue.pass());
+        assertEquals(4, queue.getRawDeque(OperableQueue.DataSource.Default).size());
+    }
+
+    @Test
+    public void appendingQueuedItemsAgainServesThemOnce() throws Exception {
+        //writes behind, like DatabaseScheduleStore: nothing answered is stored yet
+        MapStore store = new MapStore() {
+            @Override
+            public void save(String item, Schedule schedule) {
+            }
+        };
+        FixedClock clock = new FixedClock();
+        SpacedRepetitionQueue<String> queue = SpacedRepetitionQueue.buildFrom(
+                Arrays.asList("a", "b", "c"), store, clock, 10);
+        assertEquals("b", queue.skip());
+        Schedule scheduled = queue.getSchedule("a");
+
+        queue.append(Arrays.asList("a", "c", "d", "d"));
+        assertSame(scheduled, queue.getSchedule("a"));
+        ArrayList<String> queued = new ArrayList<>(queue.getRawDeque(OperableQueue.DataSource.Default));
+        Collections.sort(queued);
+        assertEquals(Arrays.asList("a", "c", "d"), queued);
+
+        clock.now += Schedule.RELEARN_DELAY;
+        assertEquals("a", queue.pass());
+        assertEquals("c", queue.pass());
+        assertEquals("d", queue.pass());
+        assertNull(queue.pass());
+    }
+
+    @Test
+    public void relearnsAreNotStarvedByNewCards() throws Exception {
+        MapStore store = new MapStore();
+        FixedClock clock = new FixedClock();
+        SpacedRepetitionQueue<String> queue = SpacedRepetitionQueue.buildFrom(
+                Arrays.asList("a", "b", "c", "d"), store, clock, 4);
+        assertEquals("a", queue.current());
+        assertEquals("b", queue.skip());
+        clock.now += Schedule.RELEARN_DELAY;
+        assertEquals("a", queue.pass());
+    }
+
+    /**
+     * Regression: new cards used to be due at 0, so every unseen card sorted ahead of every
+     * review and a spaced run with many cards only ever saw each card once(pass rate 0.030).
+     */
+    @Test
+    public void simulatedLearnerKeepsReviewing() throws Exception {
+        SimulationReport report = SessionSimulator.setupFor(5000, 42)
+                .days(200)
+                .eventsPerDay(200)
+                .run(SessionSimulator.spacedRepetition());
+        double passRate = (double) report.getPasses() / report.getEvents();
+        assertTrue("pass rate " + passRate, passRate > 0.6);
+
+        long[] waits = report.getWaitHistogram();
+        long reviews = 0;
+        for (long count : waits) {
+            reviews += count;
+        }
+        long overdue = waits[waits.length - 1];
+        assertTrue("reviews " + reviews, reviews > report.getEvents() / 2);
+        assertTrue("overdue " + overdue, overdue < reviews / 4);
+    }
+}